@@ -0,0 +1,15 @@
+package com.hpsudo.accountservice.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables the in-process account cache. Size, TTL and stats recording are set through
+ * {@code spring.cache.caffeine.spec}; hit, miss and eviction counts are published as {@code cache.*} metrics.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String ACCOUNTS = "accounts";
+}
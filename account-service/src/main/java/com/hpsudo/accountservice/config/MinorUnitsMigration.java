@@ -0,0 +1,18 @@
+package com.hpsudo.accountservice.config;
+
+import com.hpsudo.common.money.MinorUnitsColumnMigration;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Moves {@code account.balance} (double) to {@code account.balance_minor} (bigint cents) on databases created before
+ * money was stored in minor units.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MinorUnitsMigration extends MinorUnitsColumnMigration {
+
+    public MinorUnitsMigration(DataSource dataSource) {
+        super(dataSource, "account", "balance", "balance_minor");
+    }
+}
@@ -0,0 +1,18 @@
+package com.hpsudo.accountservice.config;
+
+import com.hpsudo.common.datasource.ReplicaRoutingConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sends read-only transactions (account lookups and listings) to the standbys configured under
+ * {@code account.datasource.replicas}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "account.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig extends ReplicaRoutingConfiguration {
+
+    public ReplicaRoutingConfig() {
+        super("account.datasource.replicas");
+    }
+}
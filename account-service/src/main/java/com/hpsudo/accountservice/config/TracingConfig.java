@@ -0,0 +1,21 @@
+package com.hpsudo.accountservice.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Writes finished spans to the application log through the OpenTelemetry logging exporter, so traces can be read
+ * without a collector. Which requests are traced is set with {@code management.tracing.sampling.probability}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "account.tracing.log-spans", havingValue = "true", matchIfMissing = true)
+public class TracingConfig {
+
+    @Bean
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
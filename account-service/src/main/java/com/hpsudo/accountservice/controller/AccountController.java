@@ -1,15 +1,27 @@
 package com.hpsudo.accountservice.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hpsudo.accountservice.dto.AccountRequest;
 import com.hpsudo.accountservice.dto.AccountResponse;
 import com.hpsudo.accountservice.dto.AmountRequest;
+import com.hpsudo.accountservice.dto.BulkResponse;
+import com.hpsudo.accountservice.dto.TransferRequest;
+import com.hpsudo.accountservice.dto.TransferResponse;
 import com.hpsudo.accountservice.service.AccountService;
+import com.hpsudo.accountservice.service.BulkBalanceService;
+import com.hpsudo.accountservice.service.IdempotencyService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -17,7 +29,15 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AccountController {
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final AccountService accountService;
+    private final BulkBalanceService bulkBalanceService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${account.bulk.max-items:100000}")
+    private int bulkMaxItems;
 
     @PostMapping
     public AccountResponse createAccount(@RequestBody @Valid AccountRequest request) {
@@ -41,12 +61,58 @@ public class AccountController {
     }
 
     @PostMapping("/deposit")
-    public AccountResponse deposit(@RequestBody @Valid AmountRequest request) {
-        return accountService.deposit(request);
+    public AccountResponse deposit(@RequestBody @Valid AmountRequest request,
+                                   @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return accountService.deposit(request);
+        }
+        return idempotencyService.execute(idempotencyKey, "DEPOSIT", request, AccountResponse.class,
+                claim -> accountService.deposit(request, claim));
     }
 
     @PostMapping("/withdraw")
-    public AccountResponse withdraw(@RequestBody @Valid AmountRequest request) {
-        return accountService.withdraw(request);
+    public AccountResponse withdraw(@RequestBody @Valid AmountRequest request,
+                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return accountService.withdraw(request);
+        }
+        return idempotencyService.execute(idempotencyKey, "WITHDRAW", request, AccountResponse.class,
+                claim -> accountService.withdraw(request, claim));
+    }
+
+    @PostMapping("/transfer")
+    public TransferResponse transfer(@RequestBody @Valid TransferRequest request,
+                                     @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return accountService.transfer(request);
+        }
+        return idempotencyService.execute(idempotencyKey, "TRANSFER", request, TransferResponse.class,
+                claim -> accountService.transfer(request, claim));
+    }
+
+    @PostMapping(value = "/deposit/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkResponse bulkDeposit(InputStream body) {
+        return bulkBalanceService.apply(readBulkItems(body), false);
+    }
+
+    @PostMapping(value = "/withdraw/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkResponse bulkWithdraw(InputStream body) {
+        return bulkBalanceService.apply(readBulkItems(body), true);
+    }
+
+    // A root-level JSON array and newline-delimited objects both come out of readValues one item at a time.
+    private List<AmountRequest> readBulkItems(InputStream body) {
+        List<AmountRequest> items = new ArrayList<>();
+        try (MappingIterator<AmountRequest> iterator = objectMapper.readerFor(AmountRequest.class).readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (items.size() == bulkMaxItems) {
+                    throw new IllegalArgumentException("Bulk request exceeds " + bulkMaxItems + " items");
+                }
+                items.add(iterator.nextValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed bulk request: " + e.getMessage());
+        }
+        return items;
     }
 }
@@ -3,13 +3,16 @@ package com.hpsudo.accountservice.dto;
 import com.hpsudo.accountservice.model.AccountType;
 import jakarta.validation.constraints.*;
 
+import java.math.BigDecimal;
+
 public record AccountRequest(
         @NotBlank(message = "Account holder name must not be blank")
         String accountHolder,
 
         @NotNull(message = "Balance must not be null")
         @PositiveOrZero(message = "Initial balance cannot be negative")
-        Double balance,
+        @Digits(integer = 16, fraction = 2, message = "Balance must have at most 2 decimal places")
+        BigDecimal balance,
 
         @NotNull(message = "Customer ID is required")
         Long customerId,
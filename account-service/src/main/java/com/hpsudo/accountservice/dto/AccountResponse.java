@@ -3,12 +3,13 @@ package com.hpsudo.accountservice.dto;
 import com.hpsudo.accountservice.model.AccountStatus;
 import com.hpsudo.accountservice.model.AccountType;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public record AccountResponse(
         Long id,
         String accountHolder,
-        Double balance,
+        BigDecimal balance,
         Long customerId,
         AccountType type,
         AccountStatus status,
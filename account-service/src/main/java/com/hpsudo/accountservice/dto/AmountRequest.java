@@ -1,13 +1,17 @@
 package com.hpsudo.accountservice.dto;
 
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
+import java.math.BigDecimal;
+
 public record AmountRequest(
         @NotNull(message = "Account ID must not be null")
         Long accountId,
 
         @NotNull(message = "Amount must not be null")
         @Positive(message = "Amount must be positive")
-        Double amount
+        @Digits(integer = 16, fraction = 2, message = "Amount must have at most 2 decimal places")
+        BigDecimal amount
 ) {}
@@ -0,0 +1,15 @@
+package com.hpsudo.accountservice.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of one item of a bulk request, by its position in the request. {@code balance} is the account balance
+ * right after this item was applied; {@code error} is set instead when the item was rejected.
+ */
+public record BulkItemResult(
+        int index,
+        Long accountId,
+        boolean success,
+        BigDecimal balance,
+        String error
+) {}
@@ -0,0 +1,9 @@
+package com.hpsudo.accountservice.dto;
+
+import java.util.List;
+
+public record BulkResponse(
+        int accepted,
+        int rejected,
+        List<BulkItemResult> items
+) {}
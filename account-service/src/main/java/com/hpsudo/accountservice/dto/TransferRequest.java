@@ -0,0 +1,20 @@
+package com.hpsudo.accountservice.dto;
+
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.math.BigDecimal;
+
+public record TransferRequest(
+        @NotNull(message = "Source account ID must not be null")
+        Long fromAccountId,
+
+        @NotNull(message = "Target account ID must not be null")
+        Long toAccountId,
+
+        @NotNull(message = "Amount must not be null")
+        @Positive(message = "Amount must be positive")
+        @Digits(integer = 16, fraction = 2, message = "Amount must have at most 2 decimal places")
+        BigDecimal amount
+) {}
@@ -0,0 +1,7 @@
+package com.hpsudo.accountservice.dto;
+
+public record TransferResponse(
+        String transferId,
+        AccountResponse from,
+        AccountResponse to
+) {}
@@ -0,0 +1,7 @@
+package com.hpsudo.accountservice.exception;
+
+public class EventPublishRejectedException extends RuntimeException {
+    public EventPublishRejectedException(String message) {
+        super(message);
+    }
+}
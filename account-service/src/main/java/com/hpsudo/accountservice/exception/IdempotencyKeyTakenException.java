@@ -0,0 +1,11 @@
+package com.hpsudo.accountservice.exception;
+
+/**
+ * Thrown inside a balance change whose {@code Idempotency-Key} another request has already committed, so that its
+ * transaction rolls back without applying anything and the stored response can be replayed instead.
+ */
+public class IdempotencyKeyTakenException extends RuntimeException {
+    public IdempotencyKeyTakenException(String key) {
+        super("Idempotency-Key " + key + " has already been used");
+    }
+}
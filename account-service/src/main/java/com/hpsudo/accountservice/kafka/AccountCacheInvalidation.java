@@ -0,0 +1,58 @@
+package com.hpsudo.accountservice.kafka;
+
+import com.hpsudo.accountservice.config.CacheConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spreads account cache evictions across replicas. Each node broadcasts the IDs it evicts and consumes the
+ * topic in its own consumer group, so every node drops its copy. Delivery is best effort; the cache TTL
+ * bounds how long a node can serve a balance it missed the eviction for.
+ * <p>
+ * The group is named after the node's host and port, so a restarted node rejoins its group instead of leaving
+ * another one behind on the brokers. The groups of nodes that are gone expire with the broker's offset retention.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.cache.invalidation.enabled", havingValue = "true")
+public class AccountCacheInvalidation {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final String GROUP_ID =
+            "${account.cache.invalidation.group-id:account-cache-${spring.cloud.client.hostname}-${server.port:8080}}";
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final Cache accounts;
+    private final String topic;
+
+    public AccountCacheInvalidation(KafkaTemplate<String, byte[]> kafkaTemplate,
+                                    CacheManager cacheManager,
+                                    @Value("${account.cache.invalidation.topic:account-cache-invalidation}") String topic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.accounts = cacheManager.getCache(CacheConfig.ACCOUNTS);
+        this.topic = topic;
+    }
+
+    public void publish(Long accountId) {
+        kafkaTemplate.send(topic, String.valueOf(accountId), EMPTY)
+                .exceptionally(e -> {
+                    log.warn("Could not broadcast cache eviction for accountId {}: {}", accountId, e.getMessage());
+                    return null;
+                });
+    }
+
+    @KafkaListener(
+            topics = "${account.cache.invalidation.topic:account-cache-invalidation}",
+            groupId = GROUP_ID,
+            properties = "auto.offset.reset=latest")
+    public void onEviction(ConsumerRecord<String, ?> record) {
+        accounts.evict(Long.valueOf(record.key()));
+    }
+}
@@ -1,26 +1,159 @@
 package com.hpsudo.accountservice.kafka;
 
+import com.google.protobuf.CodedOutputStream;
+import com.hpsudo.accountservice.exception.EventPublishRejectedException;
+import com.hpsudo.protobuf.EventHeaders;
 import com.hpsudo.protobuf.TransactionEvent;
-import lombok.RequiredArgsConstructor;
+import com.hpsudo.protobuf.TransactionEventBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Publishes to {@code transaction-events}. Every send is timed as {@code account.event.send}, tagged with its
+ * {@code outcome}, from the call until the broker's ack; that includes any time blocked on a full producer buffer.
+ * <p>
+ * Direct publishes from request threads are bounded by {@code account.publish.max-in-flight} unacknowledged sends.
+ * When the broker is slow and the limit is reached, {@link #reserve} rejects at once with
+ * {@link EventPublishRejectedException} instead of letting the send wait for buffer space, and counts the rejection
+ * in {@code account.event.send.rejected}; {@code account.event.send.in-flight} shows how close to the limit it runs.
+ * The outbox relay's sends are not bounded here: it waits for each batch's acks on its own thread.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class KafkaTransactionProducer {
 
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer sendSucceeded;
+    private final Timer sendFailed;
+    private final Counter rejected;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
     private static final String TOPIC = "transaction-events";
 
-    public void publish(TransactionEvent event) {
+    public KafkaTransactionProducer(KafkaTemplate<String, byte[]> kafkaTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${account.publish.max-in-flight:1000}") int maxInFlight) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.sendSucceeded = sendTimer(meterRegistry, "success");
+        this.sendFailed = sendTimer(meterRegistry, "failure");
+        this.rejected = meterRegistry.counter("account.event.send.rejected");
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        Gauge.builder("account.event.send.in-flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes one in-flight slot for a later {@link #publishReserved}, so a caller can be turned away before it commits
+     * a change whose event could not be sent. Give the slot back with {@link #cancelReservation} if it goes unused.
+     */
+    public void reserve() {
+        if (!inFlight.tryAcquire()) {
+            rejected.increment();
+            throw new EventPublishRejectedException(
+                    "Event publishing is at its limit of " + maxInFlight + " unacknowledged sends");
+        }
+    }
+
+    public void cancelReservation() {
+        inFlight.release();
+    }
+
+    /**
+     * Sends on a slot taken with {@link #reserve}, which is released when the send completes. Failures are logged
+     * here; callers only need the returned future to react to them.
+     */
+    public CompletableFuture<SendResult<String, byte[]>> publishReserved(TransactionEvent event) {
+        CompletableFuture<SendResult<String, byte[]>> future;
         try {
-            byte[] data = event.toByteArray(); // manually serialize
-            kafkaTemplate.send(TOPIC, data);
-            log.info("✅ Published event to Kafka: {}", event);
-        } catch (Exception e) {
-            log.error("❌ Failed to publish event", e);
+            future = timed(() -> kafkaTemplate.send(TOPIC, key(event.getAccountId()), event.toByteArray()));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
         }
+        return future.whenComplete((result, e) -> {
+            inFlight.release();
+            if (e != null) {
+                log.error("❌ Failed to publish event {} of account {}", event.getEventId(), event.getAccountId(), e);
+            }
+        });
+    }
+
+    /**
+     * Sends an already serialized event and leaves failure handling to the caller.
+     */
+    public CompletableFuture<SendResult<String, byte[]>> send(Long accountId, byte[] payload) {
+        return timed(() -> kafkaTemplate.send(TOPIC, key(accountId), payload));
+    }
+
+    /**
+     * Sends already serialized events of one account as a single {@code TransactionEventBatch} record.
+     */
+    public CompletableFuture<SendResult<String, byte[]>> sendBatch(Long accountId, List<byte[]> payloads) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(TOPIC, key(accountId), envelope(payloads));
+        record.headers().add(EventHeaders.PAYLOAD_TYPE, EventHeaders.BATCH.getBytes(StandardCharsets.UTF_8));
+        return timed(() -> kafkaTemplate.send(record));
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> timed(
+            Supplier<CompletableFuture<SendResult<String, byte[]>>> send) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<SendResult<String, byte[]>> future;
+        try {
+            future = send.get();
+        } catch (RuntimeException e) {
+            sample.stop(sendFailed);
+            throw e;
+        }
+        future.whenComplete((result, e) -> sample.stop(e == null ? sendSucceeded : sendFailed));
+        return future;
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("account.event.send")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Writes each payload as an element of the repeated events field, so they are not parsed and re-encoded.
+    private static byte[] envelope(List<byte[]> payloads) {
+        int size = 0;
+        for (byte[] payload : payloads) {
+            size += CodedOutputStream.computeByteArraySize(TransactionEventBatch.EVENTS_FIELD_NUMBER, payload);
+        }
+        byte[] envelope = new byte[size];
+        CodedOutputStream out = CodedOutputStream.newInstance(envelope);
+        try {
+            for (byte[] payload : payloads) {
+                out.writeByteArray(TransactionEventBatch.EVENTS_FIELD_NUMBER, payload);
+            }
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return envelope;
+    }
+
+    // Keying by account keeps every event of an account on one partition, in order.
+    private static String key(Long accountId) {
+        return String.valueOf(accountId);
     }
-}
\ No newline at end of file
+}
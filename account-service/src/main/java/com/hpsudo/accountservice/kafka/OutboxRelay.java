@@ -0,0 +1,158 @@
+package com.hpsudo.accountservice.kafka;
+
+import com.hpsudo.accountservice.model.OutboxEvent;
+import com.hpsudo.accountservice.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the outbox to Kafka in batches: read the oldest unsent rows, send them all, wait for the acks and
+ * mark the batch sent with one UPDATE. If any send fails nothing is marked and the whole batch is retried on the
+ * next run, so delivery is at-least-once.
+ * <p>
+ * Only one replica relays at a time: a run first takes a session-level advisory lock on its own connection and
+ * skips if another replica holds it. Concurrent relays would send different events of one account at the same
+ * time and lose their order. Reading and marking are short transactions of their own, so no row locks or open
+ * transaction are held while waiting for the acks; the lock is released when the run ends or its connection dies.
+ * <p>
+ * With {@code account.outbox.relay.events-per-record} above 1 the events of each account in the batch are sent
+ * as {@code TransactionEventBatch} records of up to that many events, so a busy account costs one record per batch
+ * instead of one per event. Redelivery then repeats whole records, which the consumer's event-id dedup absorbs.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.outbox.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    // Arbitrary advisory lock key held by the relaying replica
+    private static final long RELAY_LOCK = 0x6f7574626f78L;
+
+    private final OutboxEventRepository outboxRepository;
+    private final KafkaTransactionProducer kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final int eventsPerRecord;
+    private final Duration retention;
+
+    public OutboxRelay(OutboxEventRepository outboxRepository,
+                       KafkaTransactionProducer kafkaProducer,
+                       TransactionTemplate transactionTemplate,
+                       JdbcTemplate jdbcTemplate,
+                       @Value("${account.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${account.outbox.relay.send-timeout-ms:10000}") long sendTimeoutMs,
+                       @Value("${account.outbox.relay.events-per-record:1}") int eventsPerRecord,
+                       @Value("${account.outbox.cleanup.retention-minutes:60}") long retentionMinutes) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.eventsPerRecord = eventsPerRecord;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+    }
+
+    @Scheduled(fixedDelayString = "${account.outbox.relay.interval-ms:100}")
+    public void relay() {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!advisoryLock(connection, "pg_try_advisory_lock")) {
+                    return null; // another replica is relaying
+                }
+                try {
+                    int sent;
+                    do {
+                        sent = relayBatch();
+                    } while (sent == batchSize);
+                } finally {
+                    advisoryLock(connection, "pg_advisory_unlock");
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("❌ Outbox relay failed, batch will be retried", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${account.outbox.cleanup.interval-ms:60000}")
+    public void purgeSent() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxRepository.deleteSentBefore(LocalDateTime.now().minus(retention)));
+        if (deleted != null && deleted > 0) {
+            log.info("Purged {} sent outbox events", deleted);
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status ->
+                outboxRepository.findBySentAtIsNullOrderByIdAsc(Limit.of(batchSize)));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        CompletableFuture<?>[] sends = eventsPerRecord > 1 ? sendPacked(batch) : batch.stream()
+                .map(event -> kafkaProducer.send(event.getAccountId(), event.getPayload()))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(sends).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Kafka acks", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Could not publish " + batch.size() + " outbox events", e);
+        }
+
+        List<Long> ids = batch.stream().map(OutboxEvent::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.markSent(ids, LocalDateTime.now()));
+        return batch.size();
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, RELAY_LOCK);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    // The batch is in id order, so each account's events keep their order within and across its records.
+    private CompletableFuture<?>[] sendPacked(List<OutboxEvent> batch) {
+        Map<Long, List<byte[]>> byAccount = new LinkedHashMap<>();
+        for (OutboxEvent event : batch) {
+            byAccount.computeIfAbsent(event.getAccountId(), id -> new ArrayList<>()).add(event.getPayload());
+        }
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+        byAccount.forEach((accountId, payloads) -> {
+            for (int from = 0; from < payloads.size(); from += eventsPerRecord) {
+                List<byte[]> chunk = payloads.subList(from, Math.min(from + eventsPerRecord, payloads.size()));
+                sends.add(kafkaProducer.sendBatch(accountId, chunk));
+            }
+        });
+        return sends.toArray(CompletableFuture[]::new);
+    }
+}
@@ -0,0 +1,56 @@
+package com.hpsudo.accountservice.kafka;
+
+import com.hpsudo.accountservice.model.OutboxEvent;
+import com.hpsudo.accountservice.repository.OutboxEventRepository;
+import com.hpsudo.protobuf.TransactionEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Records the events of a balance change from inside its transaction.
+ * <p>
+ * With {@code account.outbox.enabled} (the default) the event is inserted into the outbox table and committed
+ * or rolled back together with the balance; {@link OutboxRelay} publishes it later. Otherwise it is published
+ * directly once the transaction has committed. The send slot is reserved up front, so when the producer is at its
+ * in-flight limit the balance change fails and rolls back rather than committing without its event.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionEventOutbox {
+
+    private final OutboxEventRepository outboxRepository;
+    private final KafkaTransactionProducer kafkaProducer;
+    private final EventTraceContext traceContext;
+
+    @Value("${account.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(TransactionEvent event) {
+        TransactionEvent traced = traceContext.attach(event);
+        if (enabled) {
+            outboxRepository.save(OutboxEvent.builder()
+                    .accountId(traced.getAccountId())
+                    .payload(traced.toByteArray())
+                    .build());
+            return;
+        }
+
+        kafkaProducer.reserve();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    kafkaProducer.publishReserved(traced);
+                } else {
+                    kafkaProducer.cancelReservation();
+                }
+            }
+        });
+    }
+}
@@ -20,7 +20,9 @@ public class Account {
 
     private String accountHolder;
 
-    private Double balance;
+    // Minor units (cents), see Money.
+    @Column(name = "balance_minor")
+    private long balanceMinor;
 
     private Long customerId; // to link with auth/customer-service
 
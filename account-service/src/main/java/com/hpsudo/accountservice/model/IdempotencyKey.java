@@ -0,0 +1,39 @@
+package com.hpsudo.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A client-supplied {@code Idempotency-Key} and the response of the request that first used it. The row is
+ * inserted with a null {@code response} and completed in the transaction of the operation, so a committed row
+ * always has its response. {@code bucket} is the creation hour; expired keys are deleted a whole bucket at a time.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_idempotency_key_bucket", columnList = "bucket"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey {
+
+    @Id
+    @Column(name = "idempotency_key", length = 128)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 16)
+    private String operation;
+
+    // SHA-256 of the operation and request body, so a key reused for a different request is refused
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(length = 4096)
+    private String response; // JSON, only null inside the claiming transaction
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private long bucket;
+}
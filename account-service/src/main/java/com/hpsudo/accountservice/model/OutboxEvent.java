@@ -0,0 +1,38 @@
+package com.hpsudo.accountservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A serialized {@code TransactionEvent} written in the same transaction as the balance change it describes,
+ * waiting for {@code OutboxRelay} to deliver it to Kafka.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_outbox_event_sent_at_id", columnList = "sentAt, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    // One nextval() per row, taken in the inserting transaction under the account's row lock, so an account's events
+    // get increasing ids whichever node writes them. The relay sends in id order; ids handed out in cached blocks
+    // would let one node's later event sort before another node's earlier one.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 1)
+    private Long id;
+
+    private Long accountId;
+
+    @Column(nullable = false, length = 4096)
+    private byte[] payload;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt; // null until the relay has had it acknowledged by Kafka
+}
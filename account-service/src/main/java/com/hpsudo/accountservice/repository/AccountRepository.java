@@ -1,12 +1,43 @@
 package com.hpsudo.accountservice.repository;
 
 import com.hpsudo.accountservice.model.Account;
+import com.hpsudo.accountservice.model.AccountStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Page<Account> findAllByDeletedFalse(Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Account> findWithLockById(Long id);
+
+    // Locks in id order, the same order transfers use, so bulk chunks and transfers cannot deadlock.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Account> findAllWithLockByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Adds {@code delta} minor units to the balance in a single conditional statement. Returns 0 when the account is
+     * missing, not in {@code status}, deleted, or the result would go below zero.
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Account a
+            set a.balanceMinor = a.balanceMinor + :delta, a.version = a.version + 1, a.updatedAt = local datetime
+            where a.id = :id and a.status = :status and a.deleted = false and a.balanceMinor + :delta >= 0
+            """)
+    int applyDelta(@Param("id") Long id, @Param("delta") long delta, @Param("status") AccountStatus status);
 }
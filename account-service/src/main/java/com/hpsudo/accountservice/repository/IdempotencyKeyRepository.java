@@ -0,0 +1,41 @@
+package com.hpsudo.accountservice.repository;
+
+import com.hpsudo.accountservice.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /**
+     * Inserts a pending key in the caller's transaction. Returns 1 if this call claimed the key, 0 if it exists;
+     * a key another transaction has inserted but not yet committed makes this wait for that transaction.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_key (idempotency_key, operation, request_hash, created_at, bucket)
+            VALUES (:key, :operation, :requestHash, :createdAt, :bucket)
+            ON CONFLICT (idempotency_key) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("key") String key, @Param("operation") String operation, @Param("requestHash") String requestHash,
+              @Param("createdAt") LocalDateTime createdAt, @Param("bucket") long bucket);
+
+    @Modifying
+    @Query("update IdempotencyKey k set k.response = :response where k.idempotencyKey = :key")
+    int complete(@Param("key") String key, @Param("response") String response);
+
+    @Query("select min(k.bucket) from IdempotencyKey k")
+    Optional<Long> findOldestBucket();
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.bucket = :bucket")
+    int deleteBucket(@Param("bucket") long bucket);
+}
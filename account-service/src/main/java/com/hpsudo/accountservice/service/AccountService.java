@@ -1,23 +1,47 @@
 package com.hpsudo.accountservice.service;
 
+import com.hpsudo.accountservice.config.CacheConfig;
 import com.hpsudo.accountservice.dto.AccountRequest;
 import com.hpsudo.accountservice.dto.AccountResponse;
 import com.hpsudo.accountservice.dto.AmountRequest;
+import com.hpsudo.accountservice.dto.TransferRequest;
+import com.hpsudo.accountservice.dto.TransferResponse;
 import com.hpsudo.accountservice.exception.AccountNotFoundException;
-import com.hpsudo.accountservice.kafka.KafkaTransactionProducer;
+import com.hpsudo.accountservice.exception.IdempotencyKeyTakenException;
+import com.hpsudo.accountservice.kafka.AccountCacheInvalidation;
+import com.hpsudo.accountservice.kafka.TransactionEventOutbox;
 import com.hpsudo.accountservice.model.Account;
 import com.hpsudo.accountservice.model.AccountStatus;
 import com.hpsudo.accountservice.repository.AccountRepository;
+import com.hpsudo.accountservice.service.BalanceUpdateMetrics.Stage;
+import com.hpsudo.accountservice.service.IdempotencyService.Claim;
+import com.hpsudo.common.datasource.ReadYourWrites;
+import com.hpsudo.common.logging.LogSampling;
+import com.hpsudo.common.money.Money;
 import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.protobuf.TransactionType;
 import jakarta.persistence.OptimisticLockException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.OffsetDateTime;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -25,12 +49,31 @@ import java.time.OffsetDateTime;
 public class AccountService {
 
     private final AccountRepository accountRepository;
-    private final KafkaTransactionProducer kafkaProducer;
+    private final TransactionEventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<AccountWriteCombiner> writeCombiner;
+    private final IdempotencyService idempotencyService;
+    private final ObjectProvider<AccountCacheInvalidation> cacheInvalidation;
+    private final BalanceUpdateMetrics metrics;
+
+    @Value("${account.balance-update.strategy:ATOMIC}")
+    private BalanceUpdateStrategy updateStrategy;
+
+    // Longest a request waits for its write-combined group; the operation may still be applied after that
+    @Value("${account.write-combining.timeout-ms:10000}")
+    private long combiningTimeoutMillis;
+
+    // Fractions of successful balance updates and transfers that are logged
+    @Value("${account.logging.sample-rate.balance-update:0.01}")
+    private double balanceUpdateLogRate;
+
+    @Value("${account.logging.sample-rate.transfer:0.01}")
+    private double transferLogRate;
 
     public AccountResponse createAccount(AccountRequest request) {
         Account account = Account.builder()
                 .accountHolder(request.accountHolder())
-                .balance(request.balance())
+                .balanceMinor(Money.toMinorUnits(request.balance()))
                 .customerId(request.customerId())
                 .type(request.type())
                 .status(AccountStatus.ACTIVE)
@@ -38,46 +81,198 @@ public class AccountService {
                 .build();
 
         log.info("Creating account for customerId={}, type={}", request.customerId(), request.type());
-        return toResponse(accountRepository.save(account));
+        // The initial balance is published like any other movement, so the transaction history sums to the balance.
+        return transactionTemplate.execute(status -> {
+            Account saved = accountRepository.save(account);
+            if (saved.getBalanceMinor() > 0) {
+                eventOutbox.record(buildOpeningBalanceEvent(saved.getId(), saved.getBalanceMinor()));
+            }
+            return toResponse(saved);
+        });
     }
 
+    // Cache misses are loaded from the primary: a replica's copy could predate a write whose eviction has already
+    // run, and would then stay cached until the TTL. A request with a read-your-writes hint skips the cache, which a
+    // write on another node may not have evicted yet, and reads from a replica that has replayed its position.
+    @Cacheable(cacheNames = CacheConfig.ACCOUNTS, key = "#id",
+            condition = "T(com.hpsudo.common.datasource.ReadYourWrites).readAfter() == 0")
+    @Transactional(readOnly = true)
     public AccountResponse getAccount(Long id) {
-        return accountRepository.findById(id)
+        Supplier<AccountResponse> load = () -> accountRepository.findById(id)
                 .filter(acc -> !acc.isDeleted())
-                .map(this::toResponse)
+                .map(AccountService::toResponse)
                 .orElseThrow(() -> new AccountNotFoundException("Account ID " + id + " not found"));
+        return ReadYourWrites.readAfter() == 0 ? ReadYourWrites.fromPrimary(load) : load.get();
     }
 
+    @Transactional(readOnly = true)
     public Page<AccountResponse> getAllAccounts(Pageable pageable) {
         return accountRepository.findAllByDeletedFalse(pageable)
-                .map(this::toResponse);
+                .map(AccountService::toResponse);
     }
 
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#id")
     public void deleteAccount(Long id) {
-        Account account = accountRepository.findById(id)
-                .filter(acc -> !acc.isDeleted())
-                .orElseThrow(() -> new AccountNotFoundException("Account ID " + id + " not found"));
+        // One read-write transaction, so the account is read from the primary it is saved to
+        transactionTemplate.executeWithoutResult(status -> {
+            Account account = accountRepository.findById(id)
+                    .filter(acc -> !acc.isDeleted())
+                    .orElseThrow(() -> new AccountNotFoundException("Account ID " + id + " not found"));
 
-        account.setDeleted(true);
-        account.setStatus(AccountStatus.CLOSED);
-        accountRepository.save(account);
+            account.setDeleted(true);
+            account.setStatus(AccountStatus.CLOSED);
+            accountRepository.save(account);
+        });
+        broadcastEviction(id);
 
         log.info("Soft-deleted account ID {}", id);
     }
 
+    // Balance changes evict rather than write through: concurrent updates could otherwise put their
+    // responses into the cache out of order and leave an older balance behind.
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.accountId()")
     public AccountResponse deposit(AmountRequest request) {
-        return retryUpdate(request.accountId(), request.amount(), false);
+        return deposit(request, null);
+    }
+
+    /**
+     * Deposits and, with a {@code claim}, records its {@code Idempotency-Key} in the same transaction.
+     */
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.accountId()")
+    public AccountResponse deposit(AmountRequest request, Claim claim) {
+        AccountResponse response =
+                updateBalance(request.accountId(), Money.toMinorUnits(request.amount()), false, claim);
+        broadcastEviction(request.accountId());
+        return response;
     }
 
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.accountId()")
     public AccountResponse withdraw(AmountRequest request) {
-        return retryUpdate(request.accountId(), request.amount(), true);
+        return withdraw(request, null);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.accountId()")
+    public AccountResponse withdraw(AmountRequest request, Claim claim) {
+        AccountResponse response =
+                updateBalance(request.accountId(), Money.toMinorUnits(request.amount()), true, claim);
+        broadcastEviction(request.accountId());
+        return response;
+    }
+
+    /**
+     * Moves money between two accounts in one transaction. Both rows are locked lower id first, so concurrent
+     * A→B and B→A transfers queue behind each other instead of deadlocking. Emits a TRANSFER_OUT and a
+     * TRANSFER_IN event linked by the same transfer id.
+     */
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.fromAccountId()"),
+            @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.toAccountId()")
+    })
+    public TransferResponse transfer(TransferRequest request) {
+        return transfer(request, null);
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.fromAccountId()"),
+            @CacheEvict(cacheNames = CacheConfig.ACCOUNTS, key = "#request.toAccountId()")
+    })
+    public TransferResponse transfer(TransferRequest request, Claim claim) {
+        Long fromId = request.fromAccountId();
+        Long toId = request.toAccountId();
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        long amountMinor = Money.toMinorUnits(request.amount());
+        String transferId = UUID.randomUUID().toString();
+
+        TransferResponse response = transactionTemplate.execute(status -> {
+            claim(claim);
+            Account first = lockActiveAccount(Math.min(fromId, toId));
+            Account second = lockActiveAccount(Math.max(fromId, toId));
+            Account from = first.getId().equals(fromId) ? first : second;
+            Account to = from == first ? second : first;
+
+            if (from.getBalanceMinor() < amountMinor) {
+                throw new IllegalArgumentException("Insufficient funds");
+            }
+            from.setBalanceMinor(from.getBalanceMinor() - amountMinor);
+            to.setBalanceMinor(Math.addExact(to.getBalanceMinor(), amountMinor));
+            AccountResponse fromResponse = toResponse(accountRepository.saveAndFlush(from));
+            AccountResponse toResponse = toResponse(accountRepository.saveAndFlush(to));
+
+            long timestampMicros = nowMicros();
+            eventOutbox.record(buildTransferEvent(fromId, toId, amountMinor, true, transferId, timestampMicros));
+            eventOutbox.record(buildTransferEvent(toId, fromId, amountMinor, false, transferId, timestampMicros));
+            return complete(claim, new TransferResponse(transferId, fromResponse, toResponse));
+        });
+
+        broadcastEviction(fromId);
+        broadcastEviction(toId);
+        if (log.isInfoEnabled() && LogSampling.sample(transferLogRate)) {
+            log.atInfo()
+                    .addKeyValue("transferId", transferId)
+                    .addKeyValue("fromAccountId", fromId)
+                    .addKeyValue("toAccountId", toId)
+                    .addKeyValue("amountMinor", amountMinor)
+                    .log("Transferred {} minor units from account {} to {}", amountMinor, fromId, toId);
+        }
+        return response;
+    }
+
+    private Account lockActiveAccount(Long accountId) {
+        Account account = accountRepository.findWithLockById(accountId)
+                .filter(acc -> !acc.isDeleted())
+                .orElseThrow(() -> new AccountNotFoundException("Account ID " + accountId + " not found"));
+        validateAccountIsActive(account);
+        return account;
+    }
+
+    private void broadcastEviction(Long accountId) {
+        cacheInvalidation.ifAvailable(invalidation -> invalidation.publish(accountId));
+    }
+
+    private AccountResponse updateBalance(Long accountId, long amountMinor, boolean isWithdraw, Claim claim) {
+        long start = System.nanoTime();
+        AccountResponse response = switch (updateStrategy) {
+            case ATOMIC -> atomicUpdate(accountId, amountMinor, isWithdraw, claim);
+            case OPTIMISTIC -> retryUpdate(accountId, amountMinor, isWithdraw, claim);
+            case COMBINING -> await(writeCombiner.getObject().submit(accountId, amountMinor, isWithdraw, claim)
+                    .orTimeout(combiningTimeoutMillis, TimeUnit.MILLISECONDS));
+        };
+        if (log.isInfoEnabled() && LogSampling.sample(balanceUpdateLogRate)) {
+            TransactionType type = isWithdraw ? TransactionType.WITHDRAW : TransactionType.DEPOSIT;
+            long latencyMicros = (System.nanoTime() - start) / 1_000;
+            // Key/value pairs become JSON fields with structured logging; the message is for the plain console
+            log.atInfo()
+                    .addKeyValue("accountId", accountId)
+                    .addKeyValue("type", type)
+                    .addKeyValue("amountMinor", amountMinor)
+                    .addKeyValue("latencyMicros", latencyMicros)
+                    .log("{} of {} minor units on account {} took {} µs", type, amountMinor, accountId, latencyMicros);
+        }
+        return response;
+    }
+
+    private static AccountResponse await(CompletableFuture<AccountResponse> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof TimeoutException) {
+                // Its Idempotency-Key, if any, commits with the update, so a retry with the key cannot apply it twice
+                throw new IllegalStateException("Timed out waiting for the balance update, it may still be applied");
+            }
+            throw e;
+        }
     }
 
-    private AccountResponse toResponse(Account account) {
+    public static AccountResponse toResponse(Account account) {
         return new AccountResponse(
                 account.getId(),
                 account.getAccountHolder(),
-                account.getBalance(),
+                Money.toDecimal(account.getBalanceMinor()),
                 account.getCustomerId(),
                 account.getType(),
                 account.getStatus(),
@@ -86,55 +281,161 @@ public class AccountService {
         );
     }
 
-    private void validateAccountIsActive(Account account) {
+    static void validateAccountIsActive(Account account) {
         if (account.getStatus() != AccountStatus.ACTIVE || account.isDeleted()) {
             throw new AccountNotFoundException("Account is not active or has been deleted");
         }
     }
 
-    private AccountResponse retryUpdate(Long accountId, double amount, boolean isWithdraw) {
+    private AccountResponse retryUpdate(Long accountId, long amountMinor, boolean isWithdraw, Claim claim) {
         int maxRetries = 3;
         for (int i = 0; i < maxRetries; i++) {
             try {
-                Account account = accountRepository.findById(accountId)
-                        .filter(acc -> !acc.isDeleted())
-                        .orElseThrow(() -> new AccountNotFoundException("Account ID " + accountId + " not found"));
+                return transactionTemplate.execute(status -> {
+                    claim(claim);
+                    long start = System.nanoTime();
+                    Account account = accountRepository.findById(accountId)
+                            .filter(acc -> !acc.isDeleted())
+                            .orElseThrow(() -> new AccountNotFoundException("Account ID " + accountId + " not found"));
+                    start = recordStage(Stage.LOOKUP, start);
 
-                validateAccountIsActive(account);
+                    validateAccountIsActive(account);
+                    long balance = account.getBalanceMinor();
+                    long updated = isWithdraw ? balance - amountMinor : Math.addExact(balance, amountMinor);
+                    if (isWithdraw && updated < 0) {
+                        throw new IllegalArgumentException("Insufficient funds");
+                    }
+                    start = recordStage(Stage.VALIDATION, start);
 
-                double updated = isWithdraw ? account.getBalance() - amount : account.getBalance() + amount;
+                    account.setBalanceMinor(updated);
+                    Account savedAccount = accountRepository.saveAndFlush(account);
+                    recordStage(Stage.SAVE, start);
+                    AccountResponse accountResponse = toResponse(savedAccount);
 
-                if (isWithdraw && updated < 0) {
-                    throw new IllegalArgumentException("Insufficient funds");
-                }
-
-                account.setBalance(updated);
-                Account savedAccount = accountRepository.save(account);
-                AccountResponse accountResponse = toResponse(savedAccount);
-
-                // Construct the transaction event
-                String type = isWithdraw ? "WITHDRAW" : "DEPOSIT";
-                String description = isWithdraw ? "Withdraw from account" : "Deposit to account";
-
-                TransactionEvent event = TransactionEvent.newBuilder()
-                        .setAccountId(accountResponse.id())
-                        .setAmount(amount)
-                        .setType(type)
-                        .setDescription(description)
-                        .setTimestamp(OffsetDateTime.now().toString())
-                        .build();
-
-                kafkaProducer.publish(event);
-                return accountResponse;
+                    recordEvent(accountResponse.id(), amountMinor, isWithdraw);
+                    return complete(claim, accountResponse);
+                });
 
             } catch (OptimisticLockException | ObjectOptimisticLockingFailureException e) {
                 log.warn("Version conflict detected on attempt {}/{} for accountId {}", i + 1, maxRetries, accountId);
+                metrics.optimisticRetry(accountId);
                 try {
                     Thread.sleep(50); // small delay before retrying
                 } catch (InterruptedException ignored) {}
             }
         }
+        metrics.optimisticExhausted(accountId);
         throw new IllegalStateException("Could not complete operation after retries due to concurrent update");
     }
 
+    private AccountResponse atomicUpdate(Long accountId, long amountMinor, boolean isWithdraw, Claim claim) {
+        return transactionTemplate.execute(status -> {
+            claim(claim);
+            long delta = isWithdraw ? -amountMinor : amountMinor;
+            // The UPDATE checks the status and balance itself, so its time is both validation and save
+            long start = System.nanoTime();
+            int updated = accountRepository.applyDelta(accountId, delta, AccountStatus.ACTIVE);
+            recordStage(Stage.SAVE, start);
+            if (updated == 0) {
+                throw rejectedUpdate(accountId);
+            }
+            recordEvent(accountId, amountMinor, isWithdraw);
+            start = System.nanoTime();
+            Account account = accountRepository.findById(accountId).orElseThrow();
+            recordStage(Stage.LOOKUP, start);
+            return complete(claim, toResponse(account));
+        });
+    }
+
+    // The conditional UPDATE matched no row; re-read it to report the same errors as the optimistic path.
+    private RuntimeException rejectedUpdate(Long accountId) {
+        long start = System.nanoTime();
+        Account account = accountRepository.findById(accountId)
+                .filter(acc -> !acc.isDeleted())
+                .orElseThrow(() -> new AccountNotFoundException("Account ID " + accountId + " not found"));
+
+        validateAccountIsActive(account);
+        recordStage(Stage.VALIDATION, start);
+        return new IllegalArgumentException("Insufficient funds");
+    }
+
+    // Takes the Idempotency-Key, if any, in the balance change's transaction; see IdempotencyService
+    private void claim(Claim claim) {
+        if (claim != null && !idempotencyService.claim(claim)) {
+            throw new IdempotencyKeyTakenException(claim.key());
+        }
+    }
+
+    private <T> T complete(Claim claim, T response) {
+        if (claim != null) {
+            idempotencyService.complete(claim, response);
+        }
+        return response;
+    }
+
+    private void recordEvent(Long accountId, long amountMinor, boolean isWithdraw) {
+        long start = System.nanoTime();
+        TransactionEvent event = buildEvent(accountId, amountMinor, isWithdraw);
+        start = recordStage(Stage.EVENT_BUILD, start);
+        eventOutbox.record(event);
+        recordStage(Stage.OUTBOX, start);
+    }
+
+    // Times a stage that began at start, a System.nanoTime() reading, and returns the end as the next stage's start.
+    // Plain longs rather than Timer.record(Supplier), which would allocate a lambda per stage and box the balance.
+    // A stage that throws is not timed.
+    private long recordStage(Stage stage, long start) {
+        long end = System.nanoTime();
+        metrics.timer(updateStrategy, stage).record(end - start, TimeUnit.NANOSECONDS);
+        return end;
+    }
+
+    static TransactionEvent buildEvent(Long accountId, long amountMinor, boolean isWithdraw) {
+        String description = isWithdraw ? "Withdraw from account" : "Deposit to account";
+
+        return TransactionEvent.newBuilder()
+                .setEventId(UUID.randomUUID().toString())
+                .setAccountId(accountId)
+                .setAmountMinor(amountMinor)
+                .setTransactionType(isWithdraw ? TransactionType.WITHDRAW : TransactionType.DEPOSIT)
+                .setDescription(description)
+                .setTimestampMicros(nowMicros())
+                .build();
+    }
+
+    static TransactionEvent buildOpeningBalanceEvent(Long accountId, long amountMinor) {
+        return TransactionEvent.newBuilder()
+                .setEventId(UUID.randomUUID().toString())
+                .setAccountId(accountId)
+                .setAmountMinor(amountMinor)
+                .setTransactionType(TransactionType.OPENING_BALANCE)
+                .setDescription("Opening balance")
+                .setTimestampMicros(nowMicros())
+                .build();
+    }
+
+    static TransactionEvent buildTransferEvent(Long accountId, Long counterpartyAccountId, long amountMinor,
+                                               boolean outgoing, String transferId, long timestampMicros) {
+        String description = outgoing
+                ? "Transfer to account " + counterpartyAccountId
+                : "Transfer from account " + counterpartyAccountId;
+
+        return TransactionEvent.newBuilder()
+                .setEventId(UUID.randomUUID().toString())
+                .setAccountId(accountId)
+                .setAmountMinor(amountMinor)
+                .setTransactionType(outgoing ? TransactionType.TRANSFER_OUT : TransactionType.TRANSFER_IN)
+                .setDescription(description)
+                .setTimestampMicros(timestampMicros)
+                .setTransferId(transferId)
+                .setCounterpartyAccountId(counterpartyAccountId)
+                .build();
+    }
+
+    // Event time as TransactionEvent.timestampMicros
+    static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
+    }
+
 }
@@ -0,0 +1,238 @@
+package com.hpsudo.accountservice.service;
+
+import com.hpsudo.accountservice.dto.AccountResponse;
+import com.hpsudo.accountservice.exception.AccountNotFoundException;
+import com.hpsudo.accountservice.exception.IdempotencyKeyTakenException;
+import com.hpsudo.accountservice.kafka.TransactionEventOutbox;
+import com.hpsudo.accountservice.model.Account;
+import com.hpsudo.accountservice.repository.AccountRepository;
+import com.hpsudo.accountservice.service.IdempotencyService.Claim;
+import com.hpsudo.common.money.Money;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Queues concurrent deposits and withdrawals per account and lets a single worker per account apply them
+ * in FIFO groups: one locked read and one balance UPDATE per group, one event per accepted operation.
+ * A withdrawal that would overdraw is rejected on its own without failing the rest of its group, and so is an
+ * operation whose {@code Idempotency-Key} is already taken; the keys of the others are claimed and completed in the
+ * group's transaction.
+ * <p>
+ * Only created for the {@code COMBINING} strategy, so the other strategies do not start its workers.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.balance-update.strategy", havingValue = "COMBINING")
+public class AccountWriteCombiner {
+
+    private final AccountRepository accountRepository;
+    private final TransactionEventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyService idempotencyService;
+    private final int maxGroupSize;
+    private final Executor executor;
+    // Only set with virtual threads; a platform pool is bounded by its size
+    private final Semaphore permits;
+
+    // An account has an entry here exactly while a drain task is scheduled or running for it.
+    // The queues are only touched inside compute* calls, which are atomic per key.
+    private final Map<Long, ArrayDeque<PendingOperation>> lanes = new ConcurrentHashMap<>();
+
+    public AccountWriteCombiner(AccountRepository accountRepository,
+                                TransactionEventOutbox eventOutbox,
+                                TransactionTemplate transactionTemplate,
+                                IdempotencyService idempotencyService,
+                                @Value("${account.write-combining.max-group-size:64}") int maxGroupSize,
+                                @Value("${account.write-combining.workers:8}") int workers,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.accountRepository = accountRepository;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.idempotencyService = idempotencyService;
+        this.maxGroupSize = maxGroupSize;
+        // workers bounds concurrent group transactions either way. Virtual threads are not pooled: each drain gets
+        // its own and waits for a permit, so a drain blocked in JDBC does not hold a platform thread.
+        if (virtualThreads) {
+            this.executor = new VirtualThreadTaskExecutor("account-combiner-");
+            this.permits = new Semaphore(workers);
+        } else {
+            this.executor = Executors.newFixedThreadPool(workers);
+            this.permits = null;
+        }
+    }
+
+    public CompletableFuture<AccountResponse> submit(Long accountId, long amountMinor, boolean isWithdraw,
+                                                     Claim claim) {
+        PendingOperation operation = new PendingOperation(amountMinor, isWithdraw, claim, new CompletableFuture<>());
+        boolean[] startDrain = new boolean[1];
+
+        lanes.compute(accountId, (id, queue) -> {
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                startDrain[0] = true;
+            }
+            queue.add(operation);
+            return queue;
+        });
+
+        if (startDrain[0]) {
+            schedule(accountId);
+        }
+        return operation.result();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor instanceof ExecutorService pool) {
+            pool.shutdown();
+        }
+    }
+
+    // The permit is taken on the drain's own thread, so a drain rescheduling its account never waits for one
+    private void drainWithPermit(Long accountId) {
+        if (permits == null) {
+            drain(accountId);
+            return;
+        }
+        permits.acquireUninterruptibly();
+        try {
+            drain(accountId);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void drain(Long accountId) {
+        List<PendingOperation> group = new ArrayList<>(maxGroupSize);
+        try {
+            lanes.computeIfPresent(accountId, (id, queue) -> {
+                while (group.size() < maxGroupSize && !queue.isEmpty()) {
+                    group.add(queue.poll());
+                }
+                return queue;
+            });
+
+            applyGroup(accountId, group);
+        } catch (Throwable e) {
+            // applyGroup handles failures of the group's transaction; this is for Errors and anything around it
+            log.error("Write-combined group of {} failed for accountId {}", group.size(), accountId, e);
+            group.forEach(operation -> operation.result().completeExceptionally(e));
+            if (e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            // Requeue rather than loop so one hot account cannot hold a worker indefinitely.
+            if (lanes.computeIfPresent(accountId, (id, queue) -> queue.isEmpty() ? null : queue) != null) {
+                schedule(accountId);
+            }
+        }
+    }
+
+    // A lane is only removed by its own drain, so one the executor refuses is failed and removed here instead;
+    // otherwise later operations of the account would queue behind a drain that never runs.
+    private void schedule(Long accountId) {
+        try {
+            executor.execute(() -> drainWithPermit(accountId));
+        } catch (RejectedExecutionException e) {
+            ArrayDeque<PendingOperation> queue = lanes.remove(accountId);
+            if (queue != null) {
+                queue.forEach(operation -> operation.result().completeExceptionally(e));
+            }
+        }
+    }
+
+    private void applyGroup(Long accountId, List<PendingOperation> group) {
+        List<AccountResponse> responses = new ArrayList<>(group.size());
+        boolean[] taken = new boolean[group.size()];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Account account = accountRepository.findWithLockById(accountId)
+                        .filter(acc -> !acc.isDeleted())
+                        .orElseThrow(() -> new AccountNotFoundException("Account ID " + accountId + " not found"));
+
+                AccountService.validateAccountIsActive(account);
+
+                boolean[] accepted = new boolean[group.size()];
+                long[] balances = new long[group.size()];
+                long balance = account.getBalanceMinor();
+                for (int i = 0; i < group.size(); i++) {
+                    PendingOperation operation = group.get(i);
+                    long updated = operation.isWithdraw()
+                            ? balance - operation.amountMinor()
+                            : Math.addExact(balance, operation.amountMinor());
+                    if (operation.isWithdraw() && updated < 0) {
+                        continue;
+                    }
+                    if (operation.claim() != null && !idempotencyService.claim(operation.claim())) {
+                        taken[i] = true;
+                        continue;
+                    }
+                    balance = updated;
+                    accepted[i] = true;
+                    balances[i] = balance;
+                    eventOutbox.record(AccountService.buildEvent(accountId, operation.amountMinor(), operation.isWithdraw()));
+                }
+
+                account.setBalanceMinor(balance);
+                AccountResponse saved = AccountService.toResponse(accountRepository.saveAndFlush(account));
+
+                for (int i = 0; i < group.size(); i++) {
+                    AccountResponse response = accepted[i] ? withBalance(saved, balances[i]) : null;
+                    if (response != null && group.get(i).claim() != null) {
+                        idempotencyService.complete(group.get(i).claim(), response);
+                    }
+                    responses.add(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Write-combined group of {} failed for accountId {}: {}", group.size(), accountId, e.getMessage());
+            group.forEach(operation -> operation.result().completeExceptionally(e));
+            return;
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            PendingOperation operation = group.get(i);
+            AccountResponse response = responses.get(i);
+            if (taken[i]) {
+                operation.result().completeExceptionally(new IdempotencyKeyTakenException(operation.claim().key()));
+            } else if (response == null) {
+                operation.result().completeExceptionally(new IllegalArgumentException("Insufficient funds"));
+            } else {
+                operation.result().complete(response);
+            }
+        }
+    }
+
+    private static AccountResponse withBalance(AccountResponse response, long balanceMinor) {
+        return new AccountResponse(
+                response.id(),
+                response.accountHolder(),
+                Money.toDecimal(balanceMinor),
+                response.customerId(),
+                response.type(),
+                response.status(),
+                response.createdAt(),
+                response.updatedAt()
+        );
+    }
+
+    private record PendingOperation(long amountMinor, boolean isWithdraw, Claim claim,
+                                    CompletableFuture<AccountResponse> result) {}
+}
@@ -0,0 +1,65 @@
+package com.hpsudo.accountservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Meters of the deposit and withdraw path. {@code account.update.stage} times each stage of a balance update, tagged
+ * with {@code stage} and {@code strategy} and published with percentile histograms, so a p99 jump can be traced to
+ * the stage it came from. {@code account.update.optimistic.retries} and {@code account.update.optimistic.exhausted}
+ * count version conflicts of the {@code OPTIMISTIC} strategy, tagged with the account id modulo
+ * {@code account.metrics.account-buckets}: enough to tell a single hot account from conflicts spread over all of
+ * them, without one series per account.
+ */
+@Component
+public class BalanceUpdateMetrics {
+
+    public enum Stage {
+        LOOKUP, VALIDATION, SAVE, EVENT_BUILD, OUTBOX
+    }
+
+    private final MeterRegistry registry;
+    private final int accountBuckets;
+    private final Map<BalanceUpdateStrategy, Map<Stage, Timer>> timers = new EnumMap<>(BalanceUpdateStrategy.class);
+
+    public BalanceUpdateMetrics(MeterRegistry registry,
+                                @Value("${account.metrics.account-buckets:16}") int accountBuckets) {
+        this.registry = registry;
+        this.accountBuckets = accountBuckets;
+        for (BalanceUpdateStrategy strategy : BalanceUpdateStrategy.values()) {
+            Map<Stage, Timer> byStage = new EnumMap<>(Stage.class);
+            for (Stage stage : Stage.values()) {
+                byStage.put(stage, Timer.builder("account.update.stage")
+                        .tag("strategy", strategy.name())
+                        .tag("stage", stage.name().toLowerCase())
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+            timers.put(strategy, byStage);
+        }
+    }
+
+    public Timer timer(BalanceUpdateStrategy strategy, Stage stage) {
+        return timers.get(strategy).get(stage);
+    }
+
+    public void optimisticRetry(Long accountId) {
+        counter("account.update.optimistic.retries", accountId).increment();
+    }
+
+    public void optimisticExhausted(Long accountId) {
+        counter("account.update.optimistic.exhausted", accountId).increment();
+    }
+
+    private Counter counter(String name, Long accountId) {
+        return Counter.builder(name)
+                .tag("bucket", String.valueOf(Math.floorMod(accountId, accountBuckets)))
+                .register(registry);
+    }
+}
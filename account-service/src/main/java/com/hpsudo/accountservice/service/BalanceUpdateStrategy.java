@@ -0,0 +1,13 @@
+package com.hpsudo.accountservice.service;
+
+/**
+ * How {@link AccountService} applies deposits and withdrawals, selected with {@code account.balance-update.strategy}.
+ */
+public enum BalanceUpdateStrategy {
+    /** Read, compute in Java, save with {@code @Version}; retried on conflict. */
+    OPTIMISTIC,
+    /** One conditional {@code UPDATE} that checks and changes the balance in the database. */
+    ATOMIC,
+    /** Per-account queue; a single worker applies pending operations in groups, see {@link AccountWriteCombiner}. */
+    COMBINING
+}
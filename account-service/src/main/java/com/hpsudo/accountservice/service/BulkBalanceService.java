@@ -0,0 +1,164 @@
+package com.hpsudo.accountservice.service;
+
+import com.hpsudo.accountservice.config.CacheConfig;
+import com.hpsudo.accountservice.dto.AmountRequest;
+import com.hpsudo.accountservice.dto.BulkItemResult;
+import com.hpsudo.accountservice.dto.BulkResponse;
+import com.hpsudo.accountservice.kafka.AccountCacheInvalidation;
+import com.hpsudo.accountservice.kafka.TransactionEventOutbox;
+import com.hpsudo.accountservice.model.Account;
+import com.hpsudo.accountservice.model.AccountStatus;
+import com.hpsudo.accountservice.repository.AccountRepository;
+import com.hpsudo.common.money.Money;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies large batches of deposits or withdrawals, such as a payroll or settlement file.
+ * <p>
+ * Items are validated one by one and grouped by account. Each chunk of accounts is then handled in one transaction:
+ * a single locking SELECT for the whole chunk, the account's items applied in request order, one batched UPDATE per
+ * account and one outbox row per accepted item, which the relay publishes in batched sends. A rejected item (invalid
+ * amount, missing or inactive account, insufficient funds, a balance that would overflow) does not affect the others;
+ * a chunk that fails as a whole rejects only its own items.
+ */
+@Slf4j
+@Service
+public class BulkBalanceService {
+
+    private final AccountRepository accountRepository;
+    private final TransactionEventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final Cache accountCache;
+    private final ObjectProvider<AccountCacheInvalidation> cacheInvalidation;
+    private final int chunkSize;
+
+    public BulkBalanceService(AccountRepository accountRepository,
+                              TransactionEventOutbox eventOutbox,
+                              TransactionTemplate transactionTemplate,
+                              Validator validator,
+                              CacheManager cacheManager,
+                              ObjectProvider<AccountCacheInvalidation> cacheInvalidation,
+                              @Value("${account.bulk.chunk-size:500}") int chunkSize) {
+        this.accountRepository = accountRepository;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.accountCache = cacheManager.getCache(CacheConfig.ACCOUNTS);
+        this.cacheInvalidation = cacheInvalidation;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkResponse apply(List<AmountRequest> requests, boolean isWithdraw) {
+        BulkItemResult[] results = new BulkItemResult[requests.size()];
+        long[] amounts = new long[requests.size()];
+        // Item indexes per account, in request order
+        Map<Long, List<Integer>> itemsByAccount = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            AmountRequest request = requests.get(i);
+            String error = validate(request);
+            if (error == null) {
+                amounts[i] = Money.toMinorUnits(request.amount());
+                itemsByAccount.computeIfAbsent(request.accountId(), id -> new ArrayList<>()).add(i);
+            } else {
+                results[i] = rejected(i, request == null ? null : request.accountId(), error);
+            }
+        }
+
+        List<Long> accountIds = new ArrayList<>(itemsByAccount.keySet());
+        for (int from = 0; from < accountIds.size(); from += chunkSize) {
+            List<Long> chunk = accountIds.subList(from, Math.min(from + chunkSize, accountIds.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        applyChunk(chunk, itemsByAccount, amounts, isWithdraw, results));
+            } catch (RuntimeException e) {
+                log.warn("Bulk chunk of {} accounts failed: {}", chunk.size(), e.getMessage());
+                for (Long accountId : chunk) {
+                    for (int i : itemsByAccount.get(accountId)) {
+                        results[i] = rejected(i, accountId, "Not applied: " + e.getMessage());
+                    }
+                }
+            }
+            chunk.forEach(this::evict);
+        }
+
+        int accepted = (int) Arrays.stream(results).filter(BulkItemResult::success).count();
+        log.info("Bulk {}: {} items applied, {} rejected across {} accounts",
+                isWithdraw ? "withdraw" : "deposit", accepted, results.length - accepted, accountIds.size());
+        return new BulkResponse(accepted, results.length - accepted, Arrays.asList(results));
+    }
+
+    private void applyChunk(List<Long> chunk, Map<Long, List<Integer>> itemsByAccount, long[] amounts,
+                            boolean isWithdraw, BulkItemResult[] results) {
+        Map<Long, Account> accounts = accountRepository.findAllWithLockByIdInOrderByIdAsc(chunk).stream()
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
+
+        for (Long accountId : chunk) {
+            List<Integer> items = itemsByAccount.get(accountId);
+            Account account = accounts.get(accountId);
+            String unavailable = unavailable(accountId, account);
+            if (unavailable != null) {
+                items.forEach(i -> results[i] = rejected(i, accountId, unavailable));
+                continue;
+            }
+
+            long balance = account.getBalanceMinor();
+            for (int i : items) {
+                if (isWithdraw && amounts[i] > balance) {
+                    results[i] = rejected(i, accountId, "Insufficient funds");
+                    continue;
+                }
+                // Checked here rather than with Math.addExact, whose exception would reject the whole chunk
+                if (!isWithdraw && amounts[i] > Long.MAX_VALUE - balance) {
+                    results[i] = rejected(i, accountId, "Balance would exceed the maximum");
+                    continue;
+                }
+                balance = isWithdraw ? balance - amounts[i] : balance + amounts[i];
+                results[i] = new BulkItemResult(i, accountId, true, Money.toDecimal(balance), null);
+                eventOutbox.record(AccountService.buildEvent(accountId, amounts[i], isWithdraw));
+            }
+            // Flushed with the rest of the chunk at commit, as one JDBC batch
+            account.setBalanceMinor(balance);
+        }
+    }
+
+    private String validate(AmountRequest request) {
+        if (request == null) {
+            return "Item must not be null";
+        }
+        Set<ConstraintViolation<AmountRequest>> violations = validator.validate(request);
+        return violations.isEmpty() ? null : violations.iterator().next().getMessage();
+    }
+
+    private static String unavailable(Long accountId, Account account) {
+        if (account == null || account.isDeleted()) {
+            return "Account ID " + accountId + " not found";
+        }
+        if (account.getStatus() != AccountStatus.ACTIVE) {
+            return "Account is not active or has been deleted";
+        }
+        return null;
+    }
+
+    private void evict(Long accountId) {
+        accountCache.evict(accountId);
+        cacheInvalidation.ifAvailable(invalidation -> invalidation.publish(accountId));
+    }
+
+    private static BulkItemResult rejected(int index, Long accountId, String error) {
+        return new BulkItemResult(index, accountId, false, null, error);
+    }
+}
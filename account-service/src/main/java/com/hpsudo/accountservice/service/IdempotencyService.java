@@ -0,0 +1,186 @@
+package com.hpsudo.accountservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hpsudo.accountservice.dto.AmountRequest;
+import com.hpsudo.accountservice.dto.TransferRequest;
+import com.hpsudo.accountservice.exception.IdempotencyConflictException;
+import com.hpsudo.accountservice.exception.IdempotencyKeyTakenException;
+import com.hpsudo.accountservice.model.IdempotencyKey;
+import com.hpsudo.accountservice.repository.IdempotencyKeyRepository;
+import com.hpsudo.common.datasource.ReadYourWrites;
+import com.hpsudo.common.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.function.Function;
+
+/**
+ * Applies an operation at most once per {@code Idempotency-Key}.
+ * <p>
+ * The key is claimed and the response stored from inside the transaction of the balance change itself, the same way
+ * the change's outbox rows are written: the operation gets a {@link Claim} and passes it to {@link #claim} and
+ * {@link #complete}, which require that transaction. The key thus commits together with the change, or rolls back
+ * with it when the operation fails or the node crashes, so a key is never taken without its change being applied or
+ * the other way round. A concurrent request with the same key blocks on the first one's insert until it commits and
+ * then finds the key taken; it rolls back without changing anything and replays the stored response. A request
+ * whose outcome is unknown, such as one that timed out, can therefore be retried with its key.
+ * <p>
+ * Requests are compared by a hash of their canonical form (operation, account ids and amount in minor units), so
+ * {@code 100.0} and {@code 100.00} are the same request. Completed keys are also held in a bounded in-memory cache
+ * (Caffeine: a hash-striped map with O(1) lookups and LRU-style eviction), so hot replays skip the database. Keys
+ * expire after {@code account.idempotency.ttl-hours}, deleted one creation-hour bucket at a time.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyKeyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, StoredResponse> completed;
+    private final long ttlHours;
+
+    public IdempotencyService(IdempotencyKeyRepository repository,
+                              ObjectMapper objectMapper,
+                              @Value("${account.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${account.idempotency.ttl-hours:24}") long ttlHours) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.ttlHours = ttlHours;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofHours(ttlHours))
+                .build();
+    }
+
+    public <T> T execute(String key, String operation, AmountRequest request, Class<T> responseType,
+                         Function<Claim, T> action) {
+        return execute(key, operation, request.accountId() + ":" + Money.toMinorUnits(request.amount()),
+                responseType, action);
+    }
+
+    public <T> T execute(String key, String operation, TransferRequest request, Class<T> responseType,
+                         Function<Claim, T> action) {
+        return execute(key, operation, request.fromAccountId() + ":" + request.toAccountId() + ":"
+                + Money.toMinorUnits(request.amount()), responseType, action);
+    }
+
+    /**
+     * Inserts the pending key. Returns false if another request has already committed it, or this transaction has
+     * claimed it for another operation; the caller must then not apply its change.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claim(Claim claim) {
+        return repository.claim(claim.key(), claim.operation(), claim.requestHash(), claim.createdAt(),
+                bucketOf(claim.createdAt())) == 1;
+    }
+
+    /**
+     * Stores the response of a claimed key, to be committed together with the change it describes.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void complete(Claim claim, Object response) {
+        repository.complete(claim.key(), toJson(response));
+    }
+
+    private <T> T execute(String key, String operation, String canonicalRequest, Class<T> responseType,
+                          Function<Claim, T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(operation + ":" + canonicalRequest);
+
+        StoredResponse cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return replay(key, cached, requestHash, responseType);
+        }
+
+        T response;
+        try {
+            response = action.apply(new Claim(key, operation, requestHash, LocalDateTime.now()));
+        } catch (IdempotencyKeyTakenException e) {
+            // Rolled back without changes; from the primary, as a replica may not have the other request's commit yet
+            IdempotencyKey existing = ReadYourWrites.fromPrimary(() -> repository.findById(key))
+                    .orElseThrow(() -> new IdempotencyConflictException(
+                            "Idempotency-Key " + key + " has just expired, retry"));
+            StoredResponse stored = new StoredResponse(existing.getRequestHash(), existing.getResponse());
+            completed.put(key, stored);
+            return replay(key, stored, requestHash, responseType);
+        }
+
+        completed.put(key, new StoredResponse(requestHash, toJson(response)));
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${account.idempotency.cleanup.interval-ms:300000}")
+    public void purgeExpired() {
+        long cutoff = bucketOf(LocalDateTime.now()) - ttlHours;
+        Long oldest = repository.findOldestBucket().orElse(null);
+        if (oldest == null) {
+            return;
+        }
+        int deleted = 0;
+        for (long bucket = oldest; bucket < cutoff; bucket++) {
+            deleted += repository.deleteBucket(bucket);
+        }
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    private <T> T replay(String key, StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException("Idempotency-Key " + key + " was already used for a different request");
+        }
+        log.info("Replaying stored response for Idempotency-Key {}", key);
+        try {
+            return objectMapper.readValue(stored.json(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response for Idempotency-Key " + key + " is unreadable", e);
+        }
+    }
+
+    private String toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store response", e);
+        }
+    }
+
+    private static String hash(String canonicalRequest) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonicalRequest.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long bucketOf(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 3600;
+    }
+
+    /**
+     * An {@code Idempotency-Key} to be claimed by the transaction of the operation it belongs to.
+     */
+    public record Claim(String key, String operation, String requestHash, LocalDateTime createdAt) {}
+
+    private record StoredResponse(String requestHash, String json) {}
+}
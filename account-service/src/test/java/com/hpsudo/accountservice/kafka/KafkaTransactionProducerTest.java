@@ -0,0 +1,118 @@
+package com.hpsudo.accountservice.kafka;
+
+import com.hpsudo.accountservice.exception.EventPublishRejectedException;
+import com.hpsudo.protobuf.TransactionEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class KafkaTransactionProducerTest {
+
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final TransactionEvent EVENT = TransactionEvent.newBuilder()
+            .setEventId("e1").setAccountId(7).build();
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private MeterRegistry meterRegistry;
+    private KafkaTransactionProducer producer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        producer = new KafkaTransactionProducer(kafkaTemplate, meterRegistry, MAX_IN_FLIGHT);
+    }
+
+    @Test
+    void reserveRejectsAtOnceWhenEverySlotIsTaken() {
+        producer.reserve();
+        producer.reserve();
+
+        EventPublishRejectedException e = assertThrows(EventPublishRejectedException.class, producer::reserve);
+
+        assertEquals("Event publishing is at its limit of 2 unacknowledged sends", e.getMessage());
+        assertEquals(1, meterRegistry.get("account.event.send.rejected").counter().count());
+        assertEquals(2, inFlight());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void slotIsHeldUntilTheBrokerAcknowledges() {
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(ack);
+        producer.reserve();
+        producer.reserve();
+
+        CompletableFuture<SendResult<String, byte[]>> sent = producer.publishReserved(EVENT);
+
+        assertEquals(2, inFlight());
+        ack.complete(null);
+        assertTrue(sent.isDone());
+        assertEquals(1, inFlight());
+        assertEquals(1, sends("success"));
+        producer.reserve();
+    }
+
+    @Test
+    void slotIsReleasedWhenTheSendFails() {
+        CompletableFuture<SendResult<String, byte[]>> ack = new CompletableFuture<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(ack);
+        producer.reserve();
+
+        CompletableFuture<SendResult<String, byte[]>> sent = producer.publishReserved(EVENT);
+        ack.completeExceptionally(new TimeoutException("no ack"));
+
+        assertTrue(sent.isCompletedExceptionally());
+        assertEquals(0, inFlight());
+        assertEquals(1, sends("failure"));
+    }
+
+    @Test
+    void slotIsReleasedWhenTheSendThrows() {
+        // e.g. max.block.ms elapsed waiting for metadata or buffer space
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class)))
+                .thenThrow(new TimeoutException("metadata not available"));
+        producer.reserve();
+
+        CompletableFuture<SendResult<String, byte[]>> sent = producer.publishReserved(EVENT);
+
+        assertTrue(sent.isCompletedExceptionally());
+        assertEquals(0, inFlight());
+        assertEquals(1, sends("failure"));
+    }
+
+    @Test
+    void cancelledReservationFreesItsSlot() {
+        producer.reserve();
+        producer.reserve();
+
+        producer.cancelReservation();
+
+        assertEquals(1, inFlight());
+        producer.reserve();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("account.event.send.in-flight").gauge().value();
+    }
+
+    private long sends(String outcome) {
+        return meterRegistry.get("account.event.send").tag("outcome", outcome).timer().count();
+    }
+}
@@ -0,0 +1,116 @@
+package com.hpsudo.accountservice.kafka;
+
+import com.hpsudo.accountservice.model.OutboxEvent;
+import com.hpsudo.accountservice.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private static final int BATCH_SIZE = 3;
+
+    private OutboxEventRepository repository;
+    private KafkaTransactionProducer producer;
+    private Connection connection;
+    private ResultSet lockResult;
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = mock(OutboxEventRepository.class);
+        producer = mock(KafkaTransactionProducer.class);
+
+        // The advisory lock calls see a connection whose lock functions return whatever lockResult says
+        connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        lockResult = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(lockResult);
+        when(lockResult.next()).thenReturn(true);
+        when(lockResult.getBoolean(1)).thenReturn(true);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+
+        // Runs the callbacks without a database; commit and rollback are no-ops on the mock
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        relay = new OutboxRelay(repository, producer, transactionTemplate, jdbcTemplate, BATCH_SIZE, 1000, 1, 60);
+    }
+
+    @Test
+    void batchIsMarkedSentInOneUpdateOnceEverySendIsAcknowledged() throws Exception {
+        when(repository.findBySentAtIsNullOrderByIdAsc(any(Limit.class)))
+                .thenReturn(List.of(event(1, 7), event(2, 8)));
+        when(producer.send(anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        verify(producer).send(eq(7L), any());
+        verify(producer).send(eq(8L), any());
+        verify(repository).markSent(eq(List.of(1L, 2L)), any());
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    void fullBatchIsFollowedByTheNextOne() {
+        when(repository.findBySentAtIsNullOrderByIdAsc(any(Limit.class)))
+                .thenReturn(List.of(event(1, 7), event(2, 7), event(3, 7)))
+                .thenReturn(List.of(event(4, 7)));
+        when(producer.send(anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        verify(repository).markSent(eq(List.of(1L, 2L, 3L)), any());
+        verify(repository).markSent(eq(List.of(4L)), any());
+    }
+
+    @Test
+    void failedSendLeavesTheWholeBatchUnmarked() throws Exception {
+        when(repository.findBySentAtIsNullOrderByIdAsc(any(Limit.class)))
+                .thenReturn(List.of(event(1, 7), event(2, 8)));
+        when(producer.send(eq(7L), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(producer.send(eq(8L), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("down")));
+
+        relay.relay();
+
+        verify(repository, never()).markSent(any(), any());
+        // The lock is given back so the next run, on any replica, retries the batch
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    void replicaWithoutTheLockSkipsTheRun() throws Exception {
+        when(lockResult.getBoolean(1)).thenReturn(false);
+
+        relay.relay();
+
+        verifyNoInteractions(repository, producer);
+        verify(connection, never()).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    private static OutboxEvent event(long id, long accountId) {
+        return OutboxEvent.builder().id(id).accountId(accountId).payload(new byte[]{(byte) id}).build();
+    }
+}
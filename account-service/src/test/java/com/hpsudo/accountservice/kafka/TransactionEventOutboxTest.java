@@ -0,0 +1,103 @@
+package com.hpsudo.accountservice.kafka;
+
+import com.hpsudo.accountservice.exception.EventPublishRejectedException;
+import com.hpsudo.accountservice.repository.OutboxEventRepository;
+import com.hpsudo.protobuf.TransactionEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * The direct publishing path, with the outbox disabled: a slot is reserved inside the balance transaction and used
+ * or given back once it completes.
+ */
+class TransactionEventOutboxTest {
+
+    private static final TransactionEvent EVENT = TransactionEvent.newBuilder()
+            .setEventId("e1").setAccountId(7).build();
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private MeterRegistry meterRegistry;
+    private TransactionEventOutbox outbox;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        meterRegistry = new SimpleMeterRegistry();
+        KafkaTransactionProducer producer = new KafkaTransactionProducer(kafkaTemplate, meterRegistry, 1);
+        EventTraceContext traceContext = mock(EventTraceContext.class);
+        when(traceContext.attach(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        outbox = new TransactionEventOutbox(mock(OutboxEventRepository.class), producer, traceContext);
+        ReflectionTestUtils.setField(outbox, "enabled", false);
+        // Stands in for the balance transaction the event is recorded in
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void commitSendsTheEventOnTheReservedSlot() {
+        outbox.record(EVENT);
+        assertEquals(1, inFlight());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(kafkaTemplate).send(eq("transaction-events"), eq("7"), any(byte[].class));
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void rollbackGivesTheSlotBackWithoutSending() {
+        outbox.record(EVENT);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verifyNoInteractions(kafkaTemplate);
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void changeIsRejectedWhileTheProducerIsAtItsLimit() {
+        outbox.record(EVENT);
+
+        // Thrown inside the transaction, so the balance change rolls back
+        assertThrows(EventPublishRejectedException.class, () -> outbox.record(EVENT));
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(0, inFlight());
+    }
+
+    private void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(status));
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("account.event.send.in-flight").gauge().value();
+    }
+}
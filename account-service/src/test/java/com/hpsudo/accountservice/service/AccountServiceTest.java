@@ -0,0 +1,160 @@
+package com.hpsudo.accountservice.service;
+
+import com.hpsudo.accountservice.dto.TransferRequest;
+import com.hpsudo.accountservice.dto.TransferResponse;
+import com.hpsudo.accountservice.exception.AccountNotFoundException;
+import com.hpsudo.accountservice.kafka.AccountCacheInvalidation;
+import com.hpsudo.accountservice.kafka.TransactionEventOutbox;
+import com.hpsudo.accountservice.model.Account;
+import com.hpsudo.accountservice.model.AccountStatus;
+import com.hpsudo.accountservice.repository.AccountRepository;
+import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.protobuf.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class AccountServiceTest {
+
+    private AccountRepository repository;
+    private TransactionEventOutbox outbox;
+    private PlatformTransactionManager transactionManager;
+    private AccountService service;
+    private final Map<Long, Account> accounts = new HashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(AccountRepository.class);
+        outbox = mock(TransactionEventOutbox.class);
+        when(repository.findWithLockById(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(accounts.get(invocation.<Long>getArgument(0))));
+        when(repository.saveAndFlush(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Runs the callbacks without a database; commit and rollback are recorded on the mock
+        transactionManager = mock(PlatformTransactionManager.class);
+        ObjectProvider<AccountWriteCombiner> writeCombiner = mock(ObjectProvider.class);
+        ObjectProvider<AccountCacheInvalidation> cacheInvalidation = mock(ObjectProvider.class);
+        service = new AccountService(repository, outbox, new TransactionTemplate(transactionManager), writeCombiner,
+                mock(IdempotencyService.class), cacheInvalidation, mock(BalanceUpdateMetrics.class));
+
+        account(3, 50_00);
+        account(9, 20_00);
+    }
+
+    @Test
+    void locksTheLowerIdFirstInEitherDirection() {
+        service.transfer(transfer(9, 3, "5.00"));
+        service.transfer(transfer(3, 9, "5.00"));
+
+        InOrder locks = inOrder(repository);
+        locks.verify(repository).findWithLockById(3L);
+        locks.verify(repository).findWithLockById(9L);
+        locks.verify(repository).findWithLockById(3L);
+        locks.verify(repository).findWithLockById(9L);
+    }
+
+    @Test
+    void movesTheAmountBetweenBothAccounts() {
+        TransferResponse response = service.transfer(transfer(3, 9, "12.34"));
+
+        assertEquals(new BigDecimal("37.66"), response.from().balance());
+        assertEquals(new BigDecimal("32.34"), response.to().balance());
+        assertEquals(37_66, accounts.get(3L).getBalanceMinor());
+        assertEquals(32_34, accounts.get(9L).getBalanceMinor());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void insufficientFundsChangesNothingAndRollsBack() {
+        assertThrows(IllegalArgumentException.class, () -> service.transfer(transfer(9, 3, "20.01")));
+
+        assertEquals(20_00, accounts.get(9L).getBalanceMinor());
+        assertEquals(50_00, accounts.get(3L).getBalanceMinor());
+        verify(repository, never()).saveAndFlush(any());
+        verifyNoInteractions(outbox);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void transferToTheSameAccountIsRejectedBeforeAnyLock() {
+        assertThrows(IllegalArgumentException.class, () -> service.transfer(transfer(3, 3, "1.00")));
+
+        verifyNoInteractions(repository, outbox, transactionManager);
+    }
+
+    @Test
+    void inactiveOrDeletedSourceOrTargetIsRejected() {
+        accounts.get(9L).setStatus(AccountStatus.INACTIVE);
+        assertRejected(transfer(9, 3, "1.00"));
+        assertRejected(transfer(3, 9, "1.00"));
+
+        account(9, 20_00).setDeleted(true);
+        assertRejected(transfer(9, 3, "1.00"));
+        assertRejected(transfer(3, 9, "1.00"));
+
+        assertRejected(transfer(3, 404, "1.00"));
+        verify(repository, never()).saveAndFlush(any());
+        verifyNoInteractions(outbox);
+    }
+
+    @Test
+    void recordsBothLegsWithTheSameTransferIdAndTimestamp() {
+        TransferResponse response = service.transfer(transfer(3, 9, "7.00"));
+
+        ArgumentCaptor<TransactionEvent> events = ArgumentCaptor.forClass(TransactionEvent.class);
+        verify(outbox, times(2)).record(events.capture());
+        List<TransactionEvent> recorded = events.getAllValues();
+        TransactionEvent out = recorded.get(0);
+        TransactionEvent in = recorded.get(1);
+
+        assertEquals(TransactionType.TRANSFER_OUT, out.getTransactionType());
+        assertEquals(3L, out.getAccountId());
+        assertEquals(9L, out.getCounterpartyAccountId());
+        assertEquals(TransactionType.TRANSFER_IN, in.getTransactionType());
+        assertEquals(9L, in.getAccountId());
+        assertEquals(3L, in.getCounterpartyAccountId());
+        assertEquals(7_00, out.getAmountMinor());
+        assertEquals(7_00, in.getAmountMinor());
+
+        assertEquals(response.transferId(), out.getTransferId());
+        assertEquals(response.transferId(), in.getTransferId());
+        assertEquals(out.getTimestampMicros(), in.getTimestampMicros());
+    }
+
+    private void assertRejected(TransferRequest request) {
+        assertThrows(AccountNotFoundException.class, () -> service.transfer(request));
+    }
+
+    private Account account(long id, long balanceMinor) {
+        Account account = Account.builder().id(id).balanceMinor(balanceMinor).status(AccountStatus.ACTIVE).build();
+        accounts.put(id, account);
+        return account;
+    }
+
+    private static TransferRequest transfer(long fromId, long toId, String amount) {
+        return new TransferRequest(fromId, toId, new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,205 @@
+package com.hpsudo.accountservice.service;
+
+import com.hpsudo.accountservice.dto.AccountResponse;
+import com.hpsudo.accountservice.exception.IdempotencyKeyTakenException;
+import com.hpsudo.accountservice.kafka.TransactionEventOutbox;
+import com.hpsudo.accountservice.model.Account;
+import com.hpsudo.accountservice.model.AccountStatus;
+import com.hpsudo.accountservice.repository.AccountRepository;
+import com.hpsudo.accountservice.service.IdempotencyService.Claim;
+import com.hpsudo.protobuf.TransactionEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountWriteCombinerTest {
+
+    private static final long ACCOUNT_ID = 7L;
+
+    private AccountRepository repository;
+    private TransactionEventOutbox outbox;
+    private IdempotencyService idempotencyService;
+    private TransactionTemplate transactionTemplate;
+    private AccountWriteCombiner combiner;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AccountRepository.class);
+        outbox = mock(TransactionEventOutbox.class);
+        idempotencyService = mock(IdempotencyService.class);
+        account = Account.builder().id(ACCOUNT_ID).balanceMinor(100_00).status(AccountStatus.ACTIVE).build();
+        when(repository.findWithLockById(ACCOUNT_ID)).thenAnswer(invocation -> Optional.of(account));
+        when(repository.saveAndFlush(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Runs the callbacks without a database; commit and rollback are no-ops on the mock
+        transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        combiner = new AccountWriteCombiner(repository, outbox, transactionTemplate, idempotencyService,
+                64, 1, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        combiner.shutdown();
+    }
+
+    @Test
+    void operationsQueuedBehindARunningGroupAreAppliedTogether() throws Exception {
+        CountDownLatch firstGroupStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstGroup = new CountDownLatch(1);
+        when(repository.findWithLockById(ACCOUNT_ID))
+                .thenAnswer(invocation -> {
+                    firstGroupStarted.countDown();
+                    releaseFirstGroup.await();
+                    return Optional.of(account);
+                })
+                .thenAnswer(invocation -> Optional.of(account));
+
+        CompletableFuture<AccountResponse> first = combiner.submit(ACCOUNT_ID, 1_00, false, null);
+        firstGroupStarted.await(5, TimeUnit.SECONDS);
+        List<CompletableFuture<AccountResponse>> queued = List.of(
+                combiner.submit(ACCOUNT_ID, 2_00, false, null),
+                combiner.submit(ACCOUNT_ID, 3_00, false, null),
+                combiner.submit(ACCOUNT_ID, 4_00, false, null));
+        releaseFirstGroup.countDown();
+
+        assertEquals(new BigDecimal("101.00"), balanceOf(first));
+        assertEquals(new BigDecimal("103.00"), balanceOf(queued.get(0)));
+        assertEquals(new BigDecimal("106.00"), balanceOf(queued.get(1)));
+        assertEquals(new BigDecimal("110.00"), balanceOf(queued.get(2)));
+        // One locked read and one UPDATE per group, one event per operation
+        verify(repository, times(2)).saveAndFlush(any(Account.class));
+        verify(outbox, times(4)).record(any(TransactionEvent.class));
+    }
+
+    @Test
+    void overdrawingWithdrawalIsRejectedAloneWithinItsGroup() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findWithLockById(ACCOUNT_ID)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(account);
+        });
+
+        CompletableFuture<AccountResponse> withdraw80 = combiner.submit(ACCOUNT_ID, 80_00, true, null);
+        CompletableFuture<AccountResponse> withdraw50 = combiner.submit(ACCOUNT_ID, 50_00, true, null);
+        CompletableFuture<AccountResponse> deposit10 = combiner.submit(ACCOUNT_ID, 10_00, false, null);
+        release.countDown();
+
+        assertEquals(new BigDecimal("20.00"), balanceOf(withdraw80));
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> withdraw50.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, rejected.getCause());
+        assertEquals(new BigDecimal("30.00"), balanceOf(deposit10));
+        assertEquals(30_00, account.getBalanceMinor());
+        verify(outbox, times(2)).record(any(TransactionEvent.class));
+    }
+
+    @Test
+    void operationWhoseKeyIsTakenIsSkippedWithinItsGroup() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findWithLockById(ACCOUNT_ID)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(account);
+        });
+        Claim fresh = claim("fresh");
+        Claim taken = claim("taken");
+        when(idempotencyService.claim(fresh)).thenReturn(true);
+        when(idempotencyService.claim(taken)).thenReturn(false);
+
+        CompletableFuture<AccountResponse> deposit = combiner.submit(ACCOUNT_ID, 10_00, false, fresh);
+        CompletableFuture<AccountResponse> duplicate = combiner.submit(ACCOUNT_ID, 10_00, false, taken);
+        release.countDown();
+
+        assertEquals(new BigDecimal("110.00"), balanceOf(deposit));
+        ExecutionException skipped = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IdempotencyKeyTakenException.class, skipped.getCause());
+        assertEquals(110_00, account.getBalanceMinor());
+        verify(outbox, times(1)).record(any(TransactionEvent.class));
+        verify(idempotencyService).complete(eq(fresh), any(AccountResponse.class));
+        verify(idempotencyService, never()).complete(eq(taken), any());
+    }
+
+    @Test
+    void laneIsFreedWhenAGroupFailsWithAnError() throws Exception {
+        when(repository.findWithLockById(ACCOUNT_ID))
+                .thenThrow(new AssertionError("boom"))
+                .thenAnswer(invocation -> Optional.of(account));
+
+        ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> combiner.submit(ACCOUNT_ID, 1_00, false, null).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, failed.getCause());
+
+        assertEquals(new BigDecimal("101.00"), balanceOf(combiner.submit(ACCOUNT_ID, 1_00, false, null)));
+    }
+
+    @Test
+    void laneIsFreedWhenTheExecutorRefusesTheDrain() {
+        combiner.shutdown();
+
+        for (int i = 0; i < 2; i++) {
+            ExecutionException refused = assertThrows(ExecutionException.class,
+                    () -> combiner.submit(ACCOUNT_ID, 1_00, false, null).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, refused.getCause());
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualDrainsOfDifferentAccountsWaitForAWorkerPermit() throws Exception {
+        combiner.shutdown();
+        combiner = new AccountWriteCombiner(repository, outbox, transactionTemplate, idempotencyService,
+                64, 1, true);
+        Account other = Account.builder().id(8L).balanceMinor(0).status(AccountStatus.ACTIVE).build();
+        when(repository.findWithLockById(8L)).thenAnswer(invocation -> Optional.of(other));
+        CountDownLatch firstGroupStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstGroup = new CountDownLatch(1);
+        when(repository.findWithLockById(ACCOUNT_ID)).thenAnswer(invocation -> {
+            firstGroupStarted.countDown();
+            releaseFirstGroup.await();
+            return Optional.of(account);
+        });
+
+        CompletableFuture<AccountResponse> first = combiner.submit(ACCOUNT_ID, 1_00, false, null);
+        firstGroupStarted.await(5, TimeUnit.SECONDS);
+        CompletableFuture<AccountResponse> second = combiner.submit(8L, 1_00, false, null);
+
+        // Its drain has a thread of its own but the only permit is held by the blocked group
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+        releaseFirstGroup.countDown();
+        assertEquals(new BigDecimal("101.00"), balanceOf(first));
+        assertEquals(new BigDecimal("1.00"), balanceOf(second));
+    }
+
+    private static Claim claim(String key) {
+        return new Claim(key, "DEPOSIT", "hash", LocalDateTime.now());
+    }
+
+    private static BigDecimal balanceOf(CompletableFuture<AccountResponse> result) throws Exception {
+        return result.get(5, TimeUnit.SECONDS).balance();
+    }
+}
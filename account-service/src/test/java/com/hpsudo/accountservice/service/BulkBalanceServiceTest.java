@@ -0,0 +1,186 @@
+package com.hpsudo.accountservice.service;
+
+import com.hpsudo.accountservice.dto.AmountRequest;
+import com.hpsudo.accountservice.dto.BulkItemResult;
+import com.hpsudo.accountservice.dto.BulkResponse;
+import com.hpsudo.accountservice.kafka.AccountCacheInvalidation;
+import com.hpsudo.accountservice.kafka.TransactionEventOutbox;
+import com.hpsudo.accountservice.model.Account;
+import com.hpsudo.accountservice.model.AccountStatus;
+import com.hpsudo.accountservice.repository.AccountRepository;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkBalanceServiceTest {
+
+    private AccountRepository repository;
+    private TransactionEventOutbox outbox;
+    private PlatformTransactionManager transactionManager;
+    private ValidatorFactory validatorFactory;
+    private final Map<Long, Account> accounts = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AccountRepository.class);
+        outbox = mock(TransactionEventOutbox.class);
+        when(repository.findAllWithLockByIdInOrderByIdAsc(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().sorted().map(accounts::get).filter(Objects::nonNull).toList();
+        });
+        // Runs the callbacks without a database; commit and rollback are recorded on the mock
+        transactionManager = mock(PlatformTransactionManager.class);
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void rejectedItemsDoNotAffectTheOthers() {
+        account(3, 10_00);
+        account(4, 10_00).setStatus(AccountStatus.INACTIVE);
+
+        BulkResponse response = service(500).apply(List.of(
+                item(3, "1.00"),
+                item(3, "-1.00"),
+                item(4, "1.00"),
+                item(5, "1.00"),
+                item(3, "1.001"),
+                item(3, "2.00")), false);
+
+        assertEquals(2, response.accepted());
+        assertEquals(4, response.rejected());
+        assertApplied(response.items().get(0), "11.00");
+        assertRejected(response.items().get(1), "Amount must be positive");
+        assertRejected(response.items().get(2), "Account is not active or has been deleted");
+        assertRejected(response.items().get(3), "Account ID 5 not found");
+        assertRejected(response.items().get(4), "Amount must have at most 2 decimal places");
+        assertApplied(response.items().get(5), "13.00");
+        assertEquals(13_00, accounts.get(3L).getBalanceMinor());
+        verify(outbox, times(2)).record(any());
+    }
+
+    @Test
+    void withdrawalsAreAppliedInRequestOrder() {
+        account(3, 10_00);
+
+        BulkResponse response = service(500).apply(List.of(
+                item(3, "6.00"),
+                item(3, "6.00"),
+                item(3, "4.00"),
+                item(3, "0.50")), true);
+
+        // The second item would overdraw; the later, smaller ones still fit in what the first left
+        assertApplied(response.items().get(0), "4.00");
+        assertRejected(response.items().get(1), "Insufficient funds");
+        assertApplied(response.items().get(2), "0.00");
+        assertRejected(response.items().get(3), "Insufficient funds");
+        assertEquals(0, accounts.get(3L).getBalanceMinor());
+        verify(outbox, times(2)).record(any());
+    }
+
+    @Test
+    void depositThatWouldOverflowIsRejectedAlone() {
+        account(3, Long.MAX_VALUE - 1_00);
+        account(4, 0);
+
+        BulkResponse response = service(500).apply(List.of(
+                item(3, "0.50"),
+                item(3, "2.00"),
+                item(4, "2.00")), false);
+
+        assertEquals(2, response.accepted());
+        assertTrue(response.items().get(0).success());
+        assertRejected(response.items().get(1), "Balance would exceed the maximum");
+        assertApplied(response.items().get(2), "2.00");
+        assertEquals(Long.MAX_VALUE - 50, accounts.get(3L).getBalanceMinor());
+    }
+
+    @Test
+    void failedChunkRejectsOnlyItsOwnItems() {
+        account(3, 10_00);
+        account(4, 10_00);
+        account(5, 10_00);
+        List<Collection<Long>> chunks = new ArrayList<>();
+        doAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            chunks.add(List.copyOf(ids));
+            if (ids.contains(4L)) {
+                throw new QueryTimeoutException("lock timeout");
+            }
+            return ids.stream().map(accounts::get).toList();
+        }).when(repository).findAllWithLockByIdInOrderByIdAsc(any());
+
+        BulkResponse response = service(1).apply(List.of(
+                item(3, "1.00"),
+                item(4, "1.00"),
+                item(5, "1.00"),
+                item(4, "2.00")), false);
+
+        assertEquals(List.of(List.of(3L), List.of(4L), List.of(5L)), chunks);
+        assertApplied(response.items().get(0), "11.00");
+        assertRejected(response.items().get(1), "Not applied: lock timeout");
+        assertApplied(response.items().get(2), "11.00");
+        assertRejected(response.items().get(3), "Not applied: lock timeout");
+        verify(transactionManager, times(2)).commit(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkBalanceService service(int chunkSize) {
+        return new BulkBalanceService(repository, outbox, new TransactionTemplate(transactionManager),
+                validatorFactory.getValidator(), new ConcurrentMapCacheManager(),
+                mock(ObjectProvider.class, invocation -> null), chunkSize);
+    }
+
+    private Account account(long id, long balanceMinor) {
+        Account account = Account.builder().id(id).balanceMinor(balanceMinor).status(AccountStatus.ACTIVE).build();
+        accounts.put(id, account);
+        return account;
+    }
+
+    private static AmountRequest item(long accountId, String amount) {
+        return new AmountRequest(accountId, new BigDecimal(amount));
+    }
+
+    private static void assertApplied(BulkItemResult item, String balance) {
+        assertTrue(item.success(), item.error());
+        assertEquals(new BigDecimal(balance), item.balance());
+        assertNull(item.error());
+    }
+
+    private static void assertRejected(BulkItemResult item, String error) {
+        assertFalse(item.success());
+        assertNull(item.balance());
+        assertEquals(error, item.error());
+    }
+}
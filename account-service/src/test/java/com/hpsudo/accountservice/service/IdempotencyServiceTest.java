@@ -0,0 +1,160 @@
+package com.hpsudo.accountservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hpsudo.accountservice.dto.AmountRequest;
+import com.hpsudo.accountservice.exception.IdempotencyConflictException;
+import com.hpsudo.accountservice.exception.IdempotencyKeyTakenException;
+import com.hpsudo.accountservice.model.IdempotencyKey;
+import com.hpsudo.accountservice.repository.IdempotencyKeyRepository;
+import com.hpsudo.accountservice.service.IdempotencyService.Claim;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private static final String KEY = "key-1";
+
+    private IdempotencyKeyRepository repository;
+    private IdempotencyService service;
+    private final AtomicInteger runs = new AtomicInteger();
+    private Claim lastClaim;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(IdempotencyKeyRepository.class);
+        service = new IdempotencyService(repository, new ObjectMapper(), 100, 24);
+    }
+
+    @Test
+    void firstRequestRunsTheActionWithItsClaim() {
+        Result result = deposit(request(7, "100.00"));
+
+        assertEquals(new Result(7, 10000), result);
+        assertEquals(1, runs.get());
+        assertEquals(KEY, lastClaim.key());
+        assertEquals("DEPOSIT", lastClaim.operation());
+        // Claiming and completing is up to the action's transaction
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void claimAndCompleteWriteTheKeyAndResponse() {
+        Claim claim = new Claim(KEY, "DEPOSIT", "hash", LocalDateTime.of(2026, 1, 1, 10, 30));
+        when(repository.claim(any(), any(), any(), any(), anyLong())).thenReturn(1, 0);
+
+        assertTrue(service.claim(claim));
+        assertFalse(service.claim(claim));
+        service.complete(claim, new Result(7, 10000));
+
+        long bucket = claim.createdAt().toEpochSecond(ZoneOffset.UTC) / 3600;
+        verify(repository, times(2)).claim(KEY, "DEPOSIT", "hash", claim.createdAt(), bucket);
+        verify(repository).complete(KEY, "{\"accountId\":7,\"amountMinor\":10000}");
+    }
+
+    @Test
+    void replayFromThisNodeSkipsTheDatabaseAndTheAction() {
+        deposit(request(7, "100.00"));
+
+        Result replayed = deposit(request(7, "100.00"));
+
+        assertEquals(new Result(7, 10000), replayed);
+        assertEquals(1, runs.get());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void amountsDifferingOnlyInScaleAreTheSameRequest() {
+        deposit(request(7, "100.0"));
+
+        assertEquals(new Result(7, 10000), deposit(request(7, "100.00")));
+        assertEquals(new Result(7, 10000), deposit(request(7, "100")));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void keyTakenByAnotherRequestReplaysItsStoredResponse() {
+        deposit(request(7, "100.00"));
+        IdempotencyKey stored = storedKey(lastClaim.requestHash(), "{\"accountId\":7,\"amountMinor\":10000}");
+        when(repository.findById(KEY)).thenReturn(Optional.of(stored));
+
+        IdempotencyService otherNode = new IdempotencyService(repository, new ObjectMapper(), 100, 24);
+        Result replayed = otherNode.execute(KEY, "DEPOSIT", request(7, "100.00"), Result.class, claim -> {
+            runs.incrementAndGet();
+            // The action's transaction found the key committed and rolled back
+            throw new IdempotencyKeyTakenException(claim.key());
+        });
+
+        assertEquals(new Result(7, 10000), replayed);
+        assertEquals(2, runs.get());
+
+        // Now cached on the other node as well
+        assertEquals(new Result(7, 10000), otherNode.execute(KEY, "DEPOSIT", request(7, "100.00"), Result.class,
+                claim -> {
+                    throw new AssertionError("not replayed");
+                }));
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsAConflict() {
+        deposit(request(7, "100.00"));
+
+        assertThrows(IdempotencyConflictException.class, () -> deposit(request(7, "200.00")));
+        assertThrows(IdempotencyConflictException.class, () -> deposit(request(8, "100.00")));
+        assertThrows(IdempotencyConflictException.class, () -> service.execute(KEY, "WITHDRAW",
+                request(7, "100.00"), Result.class, claim -> run(request(7, "100.00"))));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void failedActionLeavesTheKeyFree() {
+        assertThrows(IllegalArgumentException.class, () -> service.execute(KEY, "DEPOSIT", request(7, "100.00"),
+                Result.class, claim -> {
+                    throw new IllegalArgumentException("Insufficient funds");
+                }));
+
+        // Its claim rolled back with the action's transaction, so the retry runs the operation
+        assertEquals(new Result(7, 10000), deposit(request(7, "100.00")));
+        assertEquals(1, runs.get());
+    }
+
+    private static IdempotencyKey storedKey(String requestHash, String response) {
+        return IdempotencyKey.builder().idempotencyKey(KEY).operation("DEPOSIT").requestHash(requestHash)
+                .response(response).createdAt(LocalDateTime.now()).build();
+    }
+
+    private static AmountRequest request(long accountId, String amount) {
+        return new AmountRequest(accountId, new BigDecimal(amount));
+    }
+
+    private Result deposit(AmountRequest request) {
+        return service.execute(KEY, "DEPOSIT", request, Result.class, claim -> {
+            lastClaim = claim;
+            return run(request);
+        });
+    }
+
+    private Result run(AmountRequest request) {
+        runs.incrementAndGet();
+        return new Result(request.accountId(), request.amount().movePointRight(2).longValueExact());
+    }
+
+    record Result(long accountId, long amountMinor) {}
+}
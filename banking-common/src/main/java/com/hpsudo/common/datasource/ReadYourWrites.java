@@ -0,0 +1,51 @@
+package com.hpsudo.common.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * The read-your-writes hint of the current request: a WAL position of the primary that its reads must see. Responses
+ * to writes carry the position after their commit in {@link #HEADER}, and a client that sends it back on a later
+ * request is only served by replicas that have replayed up to it.
+ * <p>
+ * Both services' databases live in one PostgreSQL cluster with one WAL, so a position from the account service also
+ * works in the transaction service. There it only rules out replicas behind the deposit itself; as its event arrives
+ * through Kafka, the transaction may still be on its way.
+ */
+public final class ReadYourWrites {
+
+    public static final String HEADER = "X-Read-After";
+
+    private static final ThreadLocal<Long> READ_AFTER = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * @return the WAL position reads must have replayed, or 0 when any replica within the lag limit will do
+     */
+    public static long readAfter() {
+        Long readAfter = READ_AFTER.get();
+        return readAfter == null ? 0 : readAfter;
+    }
+
+    /**
+     * Runs {@code action} with all its reads on the primary, for reads that a write depends on.
+     */
+    public static <T> T fromPrimary(Supplier<T> action) {
+        Long previous = READ_AFTER.get();
+        READ_AFTER.set(Long.MAX_VALUE);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    static void set(Long readAfter) {
+        if (readAfter == null) {
+            READ_AFTER.remove();
+        } else {
+            READ_AFTER.set(readAfter);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.hpsudo.common.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Stamps responses to writes with {@link ReadYourWrites#HEADER}, the primary's WAL position. The body is written
+ * after the handler has returned, so its transaction has committed and the position is at or past its commit.
+ */
+@Slf4j
+@ControllerAdvice
+public class ReadYourWritesAdvice implements ResponseBodyAdvice<Object> {
+
+    private static final Set<HttpMethod> READS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    public ReadYourWritesAdvice(ReplicaRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType contentType,
+                                  Class<? extends HttpMessageConverter<?>> converterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!READS.contains(request.getMethod())) {
+            try {
+                response.getHeaders().set(ReadYourWrites.HEADER, String.valueOf(routingDataSource.primaryPosition()));
+            } catch (SQLException e) {
+                // The write has committed; only the hint for the client's next reads is lost
+                log.warn("Could not read the primary's WAL position for {}: {}", ReadYourWrites.HEADER, e.getMessage());
+            }
+        }
+        return body;
+    }
+}
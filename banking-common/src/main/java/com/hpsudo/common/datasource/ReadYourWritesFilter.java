@@ -0,0 +1,38 @@
+package com.hpsudo.common.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Applies the {@link ReadYourWrites#HEADER} of a request to the reads made while handling it. A value that is not a
+ * number sends them all to the primary.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(ReadYourWrites.HEADER);
+        if (header == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long readAfter;
+        try {
+            readAfter = Long.parseLong(header.strip());
+        } catch (NumberFormatException e) {
+            readAfter = Long.MAX_VALUE;
+        }
+        ReadYourWrites.set(readAfter);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.set(null);
+        }
+    }
+}
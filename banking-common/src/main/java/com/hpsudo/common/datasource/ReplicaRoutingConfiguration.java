@@ -0,0 +1,83 @@
+package com.hpsudo.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to the PostgreSQL standbys in {@code <prefix>.urls}, which are reached with the
+ * primary's credentials and {@code spring.datasource.hikari} pool settings. Replaces Boot's single pool with the
+ * primary pool behind a {@link ReplicaRoutingDataSource}, and registers the {@link ReadYourWrites} filter and advice.
+ * <p>
+ * A service enables it with a {@code @Configuration} subclass that names its property prefix, see
+ * {@link ReplicaRoutingProperties} for the properties under it.
+ */
+public abstract class ReplicaRoutingConfiguration {
+
+    private final String prefix;
+
+    protected ReplicaRoutingConfiguration(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties properties,
+                                                             Environment environment,
+                                                             MeterRegistry meterRegistry) {
+        Binder binder = Binder.get(environment);
+        ReplicaRoutingProperties replicaProperties = binder.bind(prefix, ReplicaRoutingProperties.class).orElse(null);
+        if (replicaProperties == null || replicaProperties.urls().isEmpty()) {
+            throw new IllegalStateException(prefix + ".urls must list at least one replica");
+        }
+        List<String> urls = replicaProperties.urls();
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i))
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + i);
+            // Short, so a replica that is down costs its readers little before they fall back to the primary
+            replica.setConnectionTimeout(replicaProperties.connectionTimeoutMs());
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaProperties, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+
+    @Bean
+    public ReadYourWritesAdvice readYourWritesAdvice(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new ReadYourWritesAdvice(replicaRoutingDataSource);
+    }
+}
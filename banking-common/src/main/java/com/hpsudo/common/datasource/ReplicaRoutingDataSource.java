@@ -0,0 +1,217 @@
+package com.hpsudo.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives read-only transactions a connection to a replica and everything else a connection to the primary. The choice
+ * is made when the connection is requested, so this must sit behind a {@code LazyConnectionDataSourceProxy}, which
+ * defers that to the first statement, after the transaction's read-only flag has been set.
+ * <p>
+ * {@link #probe()} measures each replica's replay lag and replayed WAL position, every {@code probeIntervalMs} on a
+ * thread of its own, so a busy application scheduler cannot leave the measurements stale. A replica is only used while
+ * its lag is within {@code maxLagMs} and its last measurement is at most {@value #STALE_AFTER_PROBES} probe intervals
+ * old, and for a request with a {@link ReadYourWrites} position only once it has replayed up to that position.
+ * Replicas take turns; when none qualifies, or the chosen one refuses a connection, the read goes to the primary.
+ * <p>
+ * Publishes {@code datasource.read.route}, the reads of read-only transactions per {@code target} and {@code reason},
+ * and {@code datasource.replica.lag} per {@code replica}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements InitializingBean, DisposableBean {
+
+    static final int STALE_AFTER_PROBES = 3;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String probeQuery;
+    private final String positionQuery;
+    private final long maxLagMillis;
+    private final long probeIntervalMillis;
+    private final ScheduledExecutorService prober =
+            Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "replica-probe"));
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter replicaReads;
+    private final Counter laggingFallbacks;
+    private final Counter readYourWritesFallbacks;
+    private final Counter failovers;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    List<HikariDataSource> replicaPools,
+                                    ReplicaRoutingProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.probeQuery = properties.probeQuery();
+        this.positionQuery = properties.positionQuery();
+        this.maxLagMillis = properties.maxLagMs();
+        this.probeIntervalMillis = properties.probeIntervalMs();
+        this.replicaReads = routeCounter(meterRegistry, "replica", "replica");
+        this.laggingFallbacks = routeCounter(meterRegistry, "primary", "lagging");
+        this.readYourWritesFallbacks = routeCounter(meterRegistry, "primary", "read_your_writes");
+        this.failovers = routeCounter(meterRegistry, "primary", "failover");
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.lag", replica, Replica::lagMillis)
+                    .tag("replica", replica.name())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        prober.scheduleWithFixedDelay(this::probe, 0, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        Replica replica = select();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replica.pool.getConnection();
+            replicaReads.increment();
+            return connection;
+        } catch (SQLException e) {
+            // Kept out of rotation until the next probe reaches it again
+            replica.unavailable(e);
+            failovers.increment();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * The primary's current WAL position. Read after a write has committed, replicas that have replayed up to it
+     * have that write.
+     */
+    public long primaryPosition() throws SQLException {
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(positionQuery)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    public void probe() {
+        for (Replica replica : replicas) {
+            replica.probe(probeQuery);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        prober.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private Replica select() {
+        long readAfter = ReadYourWrites.readAfter();
+        long measuredSince = System.currentTimeMillis() - STALE_AFTER_PROBES * probeIntervalMillis;
+        boolean behindReadAfter = false;
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            State state = replica.state;
+            // A measurement the probe has not renewed in time is as good as none
+            if (state.lagMillis() > maxLagMillis || state.measuredAt() < measuredSince) {
+                continue;
+            }
+            if (readAfter > state.replayed()) {
+                behindReadAfter = true;
+                continue;
+            }
+            return replica;
+        }
+        (behindReadAfter ? readYourWritesFallbacks : laggingFallbacks).increment();
+        return null;
+    }
+
+    private static Counter routeCounter(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("datasource.read.route")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Replay lag and replayed WAL position, as measured at {@code measuredAt}.
+     */
+    private record State(long lagMillis, long replayed, long measuredAt) {
+
+        static final State UNKNOWN = new State(Long.MAX_VALUE, 0, 0);
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        // Unknown until the first probe, so a replica is not read from before it has been measured
+        private volatile State state = State.UNKNOWN;
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        String name() {
+            return pool.getPoolName();
+        }
+
+        double lagMillis() {
+            State current = state;
+            return current == State.UNKNOWN ? Double.NaN : current.lagMillis();
+        }
+
+        void probe(String probeQuery) {
+            long measuredAt = System.currentTimeMillis();
+            try (Connection connection = pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(probeQuery)) {
+                result.next();
+                if (state == State.UNKNOWN) {
+                    log.info("Replica {} is available", name());
+                }
+                state = new State(Math.max(0, result.getLong(1)), result.getLong(2), measuredAt);
+            } catch (SQLException e) {
+                unavailable(e);
+            } catch (RuntimeException e) {
+                // Keeps the probe thread's schedule alive
+                log.warn("Probing replica {} failed", name(), e);
+                state = State.UNKNOWN;
+            }
+        }
+
+        void unavailable(SQLException e) {
+            if (state != State.UNKNOWN) {
+                log.warn("Replica {} is unavailable, its reads go to the primary: {}", name(), e.getMessage());
+            }
+            state = State.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.hpsudo.common.datasource;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Replica settings, bound from the prefix a service passes to {@link ReplicaRoutingConfiguration}.
+ *
+ * @param urls                JDBC URLs of the standbys
+ * @param maxLagMs            replicas further behind are skipped until they catch up
+ * @param probeIntervalMs     how often each replica is probed
+ * @param connectionTimeoutMs how long a read waits for a replica connection before it goes to the primary
+ * @param probeQuery          run on a replica: its replay lag in milliseconds and the WAL position it has replayed
+ * @param positionQuery       run on the primary: its current WAL position
+ */
+public record ReplicaRoutingProperties(List<String> urls,
+                                       @DefaultValue("1000") long maxLagMs,
+                                       @DefaultValue("1000") long probeIntervalMs,
+                                       @DefaultValue("1000") long connectionTimeoutMs,
+                                       String probeQuery,
+                                       String positionQuery) {
+
+    /**
+     * Replay lag of a PostgreSQL standby, 0 once it has replayed all WAL it received so an idle primary does not make
+     * it look behind, and its replayed WAL position in bytes.
+     */
+    public static final String POSTGRES_PROBE_QUERY = """
+            SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                   END,
+                   pg_last_wal_replay_lsn() - '0/0'::pg_lsn""";
+
+    /**
+     * The PostgreSQL primary's WAL position in bytes. Read after a commit it is at or past the commit's record.
+     */
+    public static final String POSTGRES_POSITION_QUERY = "SELECT pg_current_wal_lsn() - '0/0'::pg_lsn";
+
+    public ReplicaRoutingProperties {
+        urls = urls == null ? List.of() : List.copyOf(urls);
+        probeQuery = probeQuery == null || probeQuery.isBlank() ? POSTGRES_PROBE_QUERY : probeQuery;
+        positionQuery = positionQuery == null || positionQuery.isBlank() ? POSTGRES_POSITION_QUERY : positionQuery;
+    }
+}
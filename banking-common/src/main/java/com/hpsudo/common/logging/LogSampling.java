@@ -0,0 +1,20 @@
+package com.hpsudo.common.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampling of success logs on paths that run for every request or event. Each call is decided on its own, so
+ * threads share no counter; callers check the level first, so nothing is built for a line that would not be written.
+ */
+public final class LogSampling {
+
+    private LogSampling() {
+    }
+
+    /**
+     * @param rate fraction of calls to log, from 0 (never) to 1 (always)
+     */
+    public static boolean sample(double rate) {
+        return rate >= 1 || rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
@@ -0,0 +1,97 @@
+package com.hpsudo.common.money;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Moves a {@code double} money column to a {@code bigint} column of {@link Money} minor units on databases created
+ * before money was stored that way. The new column is added nullable, backfilled, set NOT NULL and the old column
+ * dropped, all in one transaction, so a restart during the migration leaves either the old or the new schema.
+ * <p>
+ * Runs before the entity manager factory, so Hibernate's schema update or validation already sees the new column.
+ * Does nothing when the old column does not exist, which covers new and already migrated databases. A service enables
+ * it with a {@code @Configuration} subclass that names its table and columns.
+ */
+@Slf4j
+public abstract class MinorUnitsColumnMigration implements InitializingBean {
+
+    // Arbitrary advisory lock key, so only one starting instance migrates
+    private static final long MIGRATION_LOCK = 0x6d696e6f72L;
+
+    private final DataSource dataSource;
+    private final String table;
+    private final String legacyColumn;
+    private final String minorColumn;
+
+    protected MinorUnitsColumnMigration(DataSource dataSource, String table, String legacyColumn, String minorColumn) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.legacyColumn = legacyColumn;
+        this.minorColumn = minorColumn;
+    }
+
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor minorUnitsMigrationFirst() {
+        return new EntityManagerFactoryDependsOnPostProcessor(MinorUnitsColumnMigration.class);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!hasLegacyColumn(connection)) {
+                return;
+            }
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT pg_advisory_xact_lock(" + MIGRATION_LOCK + ")");
+                // Another instance may have migrated while this one waited for the lock
+                if (hasLegacyColumn(connection)) {
+                    log.info("Migrating {}.{} to {}.{}", table, legacyColumn, table, minorColumn);
+                    for (String sql : migration()) {
+                        statement.execute(sql);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private String[] migration() {
+        return new String[]{
+                "ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + minorColumn + " BIGINT",
+                // Through numeric, so 0.285 becomes 29 rather than the 28 its binary double rounds to
+                "UPDATE " + table + " SET " + minorColumn + " = round(COALESCE(" + legacyColumn + ", 0)::numeric * 100)"
+                        + " WHERE " + minorColumn + " IS NULL",
+                "ALTER TABLE " + table + " ALTER COLUMN " + minorColumn + " SET NOT NULL",
+                "ALTER TABLE " + table + " DROP COLUMN " + legacyColumn
+        };
+    }
+
+    private boolean hasLegacyColumn(Connection connection) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement("""
+                SELECT 1 FROM information_schema.columns
+                WHERE table_schema = current_schema()
+                  AND lower(table_name) = ? AND lower(column_name) = ?
+                """)) {
+            query.setString(1, table);
+            query.setString(2, legacyColumn);
+            try (ResultSet rows = query.executeQuery()) {
+                return rows.next();
+            }
+        }
+    }
+}
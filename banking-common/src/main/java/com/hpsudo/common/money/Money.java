@@ -0,0 +1,29 @@
+package com.hpsudo.common.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money is stored and computed as a primitive {@code long} count of minor units (cents) with a fixed
+ * {@link #SCALE}; {@link BigDecimal} only appears at the JSON edge.
+ */
+public final class Money {
+
+    /** Number of decimal places in one major unit, i.e. minor units are {@code 10^-SCALE}. */
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " is not representable with " + SCALE + " decimal places");
+        }
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+}
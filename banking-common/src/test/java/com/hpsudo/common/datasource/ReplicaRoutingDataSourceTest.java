@@ -0,0 +1,168 @@
+package com.hpsudo.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routes between two in-memory H2 databases standing in for a PostgreSQL primary and its standby. Each holds its own
+ * name in {@code whoami}, so a query shows where it ran. The primary's WAL position is whatever {@code wal_position}
+ * says, and the replica's lag and replayed position whatever {@code replica_state} says.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final long PROBE_INTERVAL_MILLIS = 200;
+
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private MeterRegistry meterRegistry;
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        primary = pool("primary");
+        replica = pool("replica");
+        new JdbcTemplate(primary).execute(
+                "CREATE TABLE wal_position (lsn BIGINT); INSERT INTO wal_position VALUES (100)");
+        new JdbcTemplate(replica).execute(
+                "CREATE TABLE replica_state (millis BIGINT, lsn BIGINT); INSERT INTO replica_state VALUES (0, 100)");
+
+        meterRegistry = new SimpleMeterRegistry();
+        routing = new ReplicaRoutingDataSource(primary, List.of(replica), new ReplicaRoutingProperties(
+                List.of("jdbc:h2:mem:replica"), 1000, PROBE_INTERVAL_MILLIS, 1000,
+                "SELECT millis, lsn FROM replica_state", "SELECT lsn FROM wal_position"), meterRegistry);
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbc = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        routing.probe();
+    }
+
+    @AfterEach
+    void tearDown() {
+        routing.destroy();
+        primary.close();
+    }
+
+    @Test
+    void readOnlyTransactionsReadFromTheReplica() {
+        assertEquals("replica", readOnlyWhoami());
+        assertEquals(1, routes("replica", "replica"));
+    }
+
+    @Test
+    void everythingElseUsesThePrimary() {
+        assertEquals("primary", readWrite.execute(status -> whoami()));
+        assertEquals("primary", whoami());
+        assertEquals(0, routes("replica", "replica"));
+    }
+
+    @Test
+    void replicaTooFarBehindIsSkippedUntilItCatchesUp() {
+        setReplicaState(5000, 100);
+        assertEquals("primary", readOnlyWhoami());
+        assertEquals(1, routes("primary", "lagging"));
+
+        setReplicaState(200, 100);
+        assertEquals("replica", readOnlyWhoami());
+    }
+
+    @Test
+    void readAfterAWriteWaitsForTheReplicaToReplayItsPosition() throws SQLException {
+        new JdbcTemplate(primary).update("UPDATE wal_position SET lsn = 150");
+        ReadYourWrites.set(routing.primaryPosition());
+        try {
+            assertEquals("primary", readOnlyWhoami());
+            assertEquals(1, routes("primary", "read_your_writes"));
+
+            // Within the lag limit, but not yet past the write
+            setReplicaState(0, 149);
+            assertEquals("primary", readOnlyWhoami());
+
+            setReplicaState(0, 150);
+            assertEquals("replica", readOnlyWhoami());
+        } finally {
+            ReadYourWrites.set(null);
+        }
+    }
+
+    @Test
+    void measurementThatIsNotRenewedIsIgnored() throws InterruptedException {
+        Thread.sleep((ReplicaRoutingDataSource.STALE_AFTER_PROBES + 1) * PROBE_INTERVAL_MILLIS);
+        assertEquals("primary", readOnlyWhoami());
+        assertEquals(1, routes("primary", "lagging"));
+
+        routing.probe();
+        assertEquals("replica", readOnlyWhoami());
+    }
+
+    @Test
+    void probesRunOnTheirOwnThreadOnceStarted() throws InterruptedException {
+        routing.afterPropertiesSet();
+        Thread.sleep((ReplicaRoutingDataSource.STALE_AFTER_PROBES + 1) * PROBE_INTERVAL_MILLIS);
+        assertEquals("replica", readOnlyWhoami());
+
+        new JdbcTemplate(replica).update("UPDATE replica_state SET millis = 5000");
+        Thread.sleep(3 * PROBE_INTERVAL_MILLIS);
+        assertEquals("primary", readOnlyWhoami());
+    }
+
+    @Test
+    void fromPrimaryOverridesReadOnly() {
+        assertEquals("primary", ReadYourWrites.fromPrimary(this::readOnlyWhoami));
+        assertEquals("replica", readOnlyWhoami());
+    }
+
+    @Test
+    void replicaRefusingConnectionsFallsBackToThePrimary() {
+        replica.close();
+        assertEquals("primary", readOnlyWhoami());
+        assertEquals(1, routes("primary", "failover"));
+
+        // Out of rotation from then on, until a probe reaches it again
+        assertEquals("primary", readOnlyWhoami());
+        assertEquals(1, routes("primary", "lagging"));
+    }
+
+    private String readOnlyWhoami() {
+        return readOnly.execute(status -> whoami());
+    }
+
+    private String whoami() {
+        return jdbc.queryForObject("SELECT name FROM whoami", String.class);
+    }
+
+    private void setReplicaState(long millis, long lsn) {
+        new JdbcTemplate(replica).update("UPDATE replica_state SET millis = ?, lsn = ?", millis, lsn);
+        routing.probe();
+    }
+
+    private double routes(String target, String reason) {
+        return meterRegistry.get("datasource.read.route").tag("target", target).tag("reason", reason).counter().count();
+    }
+
+    private static HikariDataSource pool(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:" + name);
+        pool.setPoolName(name);
+        new JdbcTemplate(pool).execute("CREATE TABLE whoami (name VARCHAR(16)); INSERT INTO whoami VALUES ('" + name + "')");
+        return pool;
+    }
+}
@@ -0,0 +1,17 @@
+package com.hpsudo.protobuf;
+
+/**
+ * Kafka record headers of the {@code transaction-events} topic.
+ * <p>
+ * A record without {@link #PAYLOAD_TYPE} holds one {@link TransactionEvent}. Producers in high-throughput mode send
+ * a {@link TransactionEventBatch} instead and set the header to {@link #BATCH}.
+ */
+public final class EventHeaders {
+
+    public static final String PAYLOAD_TYPE = "payload-type";
+
+    public static final String BATCH = "TransactionEventBatch";
+
+    private EventHeaders() {
+    }
+}
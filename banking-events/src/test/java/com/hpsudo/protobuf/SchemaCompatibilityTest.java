@@ -0,0 +1,119 @@
+package com.hpsudo.protobuf;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the schema against {@code schema-baseline.txt}, the fields and enum values already released. Services are
+ * deployed one at a time and Kafka keeps old records, so every change has to stay readable in both directions: a
+ * released field keeps its number, name and type for good, and a removed one must have its number reserved.
+ */
+class SchemaCompatibilityTest {
+
+    private static final FileDescriptor SCHEMA = TransactionEventProto.getDescriptor();
+
+    @Test
+    void releasedFieldsAreUnchangedOrReserved() throws IOException {
+        Map<String, String> current = current();
+        List<String> problems = new ArrayList<>();
+
+        for (Map.Entry<String, String> released : baseline().entrySet()) {
+            String key = released.getKey();
+            String now = current.get(key);
+            if (now == null) {
+                String[] typeAndNumber = key.split(" ");
+                if (!isReserved(typeAndNumber[0], Integer.parseInt(typeAndNumber[1]))) {
+                    problems.add(key + " (" + released.getValue() + ") was removed without reserving its number");
+                }
+            } else if (!now.equals(released.getValue())) {
+                problems.add(key + " changed from '" + released.getValue() + "' to '" + now + "'");
+            }
+        }
+
+        assertTrue(problems.isEmpty(), () -> "Incompatible schema changes:\n" + String.join("\n", problems));
+    }
+
+    @Test
+    void newFieldsAreRecordedInTheBaseline() throws IOException {
+        Map<String, String> baseline = baseline();
+        List<String> missing = current().entrySet().stream()
+                .filter(entry -> !baseline.containsKey(entry.getKey()))
+                .map(entry -> entry.getKey() + " " + entry.getValue())
+                .toList();
+
+        assertTrue(missing.isEmpty(), () -> "Add to schema-baseline.txt:\n" + String.join("\n", missing));
+    }
+
+    // "<type> <number>" -> "<name> <kind>", as in the baseline file
+    private static Map<String, String> current() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (Descriptor message : SCHEMA.getMessageTypes()) {
+            for (FieldDescriptor field : message.getFields()) {
+                entries.put(message.getName() + " " + field.getNumber(), field.getName() + " " + kind(field));
+            }
+        }
+        for (EnumDescriptor type : SCHEMA.getEnumTypes()) {
+            for (EnumValueDescriptor value : type.getValues()) {
+                entries.put(type.getName() + " " + value.getNumber(), value.getName());
+            }
+        }
+        return entries;
+    }
+
+    private static String kind(FieldDescriptor field) {
+        String kind = switch (field.getJavaType()) {
+            case MESSAGE -> field.getMessageType().getName();
+            case ENUM -> field.getEnumType().getName();
+            default -> field.getType().name().toLowerCase();
+        };
+        return field.isRepeated() ? "repeated " + kind : kind;
+    }
+
+    private static boolean isReserved(String typeName, int number) {
+        Descriptor message = SCHEMA.findMessageTypeByName(typeName);
+        if (message != null) {
+            // Message reserved ranges exclude their end
+            return message.toProto().getReservedRangeList().stream()
+                    .anyMatch(range -> number >= range.getStart() && number < range.getEnd());
+        }
+        EnumDescriptor type = SCHEMA.findEnumTypeByName(typeName);
+        if (type != null) {
+            // Enum reserved ranges include their end
+            return type.toProto().getReservedRangeList().stream()
+                    .anyMatch(range -> number >= range.getStart() && number <= range.getEnd());
+        }
+        return false;
+    }
+
+    private static Map<String, String> baseline() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (InputStream in = SchemaCompatibilityTest.class.getResourceAsStream("/schema-baseline.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(" ", 3);
+                entries.put(parts[0] + " " + parts[1], parts[2]);
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,53 @@
+package com.hpsudo.benchmarks;
+
+import com.hpsudo.accountservice.AccountServiceApplication;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Boots a service context against an in-memory H2 database and an auto-completing {@link MockProducer},
+ * so the suites measure the service code rather than the network.
+ */
+public final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    public static ConfigurableApplicationContext accountService(Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.main.web-application-type", "none");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:accountdb-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("logging.level.root", "WARN");
+        properties.put("management.tracing.enabled", "false");
+        properties.putAll(overrides);
+
+        return new SpringApplicationBuilder(AccountServiceApplication.class, MockKafkaConfig.class)
+                .properties(properties)
+                .run();
+    }
+
+    @Configuration
+    static class MockKafkaConfig {
+
+        @Bean
+        @Primary
+        public KafkaTemplate<String, byte[]> mockKafkaTemplate() {
+            return new KafkaTemplate<>(new MockProducerFactory<>(
+                    () -> new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer())));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.hpsudo.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Accepts the usual JMH command line and always attaches the GC
+ * profiler, so every suite reports {@code gc.alloc.rate.norm} next to ops/s and the sampled percentiles.
+ * <p>
+ * {@code -Dbench.threads=1,2,4,8} repeats the selected benchmarks once per thread count, which is how the
+ * contended suites are meant to be run.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String threadSweep = System.getProperty("bench.threads");
+
+        if (threadSweep == null) {
+            run(new OptionsBuilder().parent(commandLine));
+            return;
+        }
+        for (String threads : threadSweep.split(",")) {
+            run(new OptionsBuilder().parent(commandLine).threads(Integer.parseInt(threads.trim())));
+        }
+    }
+
+    private static void run(ChainedOptionsBuilder options) throws RunnerException {
+        new Runner(options.addProfiler(GCProfiler.class).build()).run();
+    }
+}
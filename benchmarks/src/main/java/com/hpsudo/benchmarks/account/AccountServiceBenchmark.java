@@ -0,0 +1,89 @@
+package com.hpsudo.benchmarks.account;
+
+import com.hpsudo.accountservice.dto.AccountRequest;
+import com.hpsudo.accountservice.dto.AccountResponse;
+import com.hpsudo.accountservice.dto.AmountRequest;
+import com.hpsudo.accountservice.model.AccountType;
+import com.hpsudo.accountservice.service.AccountService;
+import com.hpsudo.benchmarks.BenchmarkContexts;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link AccountService#deposit} and {@link AccountService#withdraw} end to end against H2, per balance-update
+ * strategy. With {@code accounts=1} every thread contends on the same row; run with
+ * {@code -Dbench.threads=1,2,4,8} to sweep the contention level.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+    @Param({"ATOMIC", "OPTIMISTIC", "COMBINING"})
+    public String strategy;
+
+    @Param({"1", "64"})
+    public int accounts;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private long[] accountIds;
+    private final LongAdder failures = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.accountService(Map.of("account.balance-update.strategy", strategy));
+        accountService = context.getBean(AccountService.class);
+
+        accountIds = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = accountService.createAccount(
+                    new AccountRequest("Benchmark " + i, OPENING_BALANCE, (long) i, AccountType.CHECKING)).id();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (failures.sum() > 0) {
+            System.out.printf("%n%s/%d accounts: %d operations failed%n", strategy, accounts, failures.sum());
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public AccountResponse deposit() {
+        try {
+            return accountService.deposit(new AmountRequest(nextAccountId(), AMOUNT));
+        } catch (IllegalStateException e) {
+            // Optimistic retries exhausted; counted rather than failing the run.
+            failures.increment();
+            return null;
+        }
+    }
+
+    @Benchmark
+    public AccountResponse withdraw() {
+        try {
+            return accountService.withdraw(new AmountRequest(nextAccountId(), AMOUNT));
+        } catch (IllegalStateException e) {
+            failures.increment();
+            return null;
+        }
+    }
+
+    private long nextAccountId() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+}
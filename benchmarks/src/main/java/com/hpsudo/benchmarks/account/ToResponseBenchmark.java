@@ -0,0 +1,46 @@
+package com.hpsudo.benchmarks.account;
+
+import com.hpsudo.accountservice.dto.AccountResponse;
+import com.hpsudo.accountservice.model.Account;
+import com.hpsudo.accountservice.model.AccountStatus;
+import com.hpsudo.accountservice.model.AccountType;
+import com.hpsudo.accountservice.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to response mapping done on every read and every balance change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ToResponseBenchmark {
+
+    private Account account;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        account = Account.builder()
+                .id(42L)
+                .accountHolder("Benchmark Holder")
+                .balanceMinor(123_456_78L)
+                .customerId(7L)
+                .type(AccountType.BUSINESS)
+                .status(AccountStatus.ACTIVE)
+                .version(3L)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    @Benchmark
+    public AccountResponse toResponse() {
+        return AccountService.toResponse(account);
+    }
+}
@@ -0,0 +1,64 @@
+package com.hpsudo.benchmarks.account;
+
+import com.hpsudo.accountservice.dto.AccountRequest;
+import com.hpsudo.accountservice.dto.TransferRequest;
+import com.hpsudo.accountservice.dto.TransferResponse;
+import com.hpsudo.accountservice.model.AccountType;
+import com.hpsudo.accountservice.service.AccountService;
+import com.hpsudo.benchmarks.BenchmarkContexts;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AccountService#transfer} between neighbours on a small ring of accounts, in both directions, so
+ * concurrent threads keep taking the same pairs of row locks in opposite request order. A deadlock would
+ * surface as a lock timeout and fail the run. Run with {@code -Dbench.threads=1,2,4,8} to sweep contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+    @Param({"2", "8"})
+    public int ringSize;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private long[] ring;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.accountService(Map.of());
+        accountService = context.getBean(AccountService.class);
+
+        ring = new long[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = accountService.createAccount(
+                    new AccountRequest("Ring " + i, OPENING_BALANCE, (long) i, AccountType.CHECKING)).id();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TransferResponse transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ringSize);
+        int to = random.nextBoolean() ? (from + 1) % ringSize : (from + ringSize - 1) % ringSize;
+        return accountService.transfer(new TransferRequest(ring[from], ring[to], AMOUNT));
+    }
+}
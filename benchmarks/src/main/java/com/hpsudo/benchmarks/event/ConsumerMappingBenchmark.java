@@ -0,0 +1,45 @@
+package com.hpsudo.benchmarks.event;
+
+import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.transactionservice.kafka.TransactionEventMapper;
+import com.hpsudo.transactionservice.model.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer-side cost per record: the {@code OffsetDateTime.parse} of a {@code V1} string timestamp on its own, and
+ * the full event to {@link Transaction} mapping for each event layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsumerMappingBenchmark {
+
+    @Param({"V1", "V2"})
+    private String schema;
+
+    private final TransactionEventMapper mapper = new TransactionEventMapper();
+    private String timestamp;
+    private TransactionEvent event;
+
+    @Setup
+    public void setUp() {
+        timestamp = OffsetDateTime.now().toString();
+        event = SampleEvents.deposit(schema);
+    }
+
+    @Benchmark
+    public OffsetDateTime parseTimestamp() {
+        return OffsetDateTime.parse(timestamp);
+    }
+
+    @Benchmark
+    public Transaction toTransaction() {
+        return mapper.toTransaction(event);
+    }
+}
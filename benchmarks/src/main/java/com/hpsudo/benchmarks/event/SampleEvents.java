@@ -0,0 +1,37 @@
+package com.hpsudo.benchmarks.event;
+
+import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.protobuf.TransactionType;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * The same deposit event in both layouts of {@link TransactionEvent}: {@code V1} with the ISO-8601 timestamp and type
+ * strings, {@code V2} with {@code timestampMicros} and the {@code transactionType} enum.
+ */
+public final class SampleEvents {
+
+    private SampleEvents() {
+    }
+
+    @SuppressWarnings("deprecation")
+    public static TransactionEvent deposit(String schema) {
+        TransactionEvent.Builder event = TransactionEvent.newBuilder()
+                .setEventId(UUID.randomUUID().toString())
+                .setAccountId(1_234_567L)
+                .setAmountMinor(30_000L)
+                .setDescription("Deposit to account");
+        switch (schema) {
+            case "V1" -> event.setType("DEPOSIT").setTimestamp(OffsetDateTime.now().toString());
+            case "V2" -> {
+                Instant now = Instant.now();
+                event.setTransactionType(TransactionType.DEPOSIT)
+                        .setTimestampMicros(now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000);
+            }
+            default -> throw new IllegalArgumentException("Unknown schema " + schema);
+        }
+        return event.build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.hpsudo.benchmarks.event;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.hpsudo.protobuf.TransactionEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Protobuf encode and decode of {@link TransactionEvent}, as done once per deposit and once per consumed record,
+ * for both event layouts. The encoded size of each layout is printed when its trial starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionEventCodecBenchmark {
+
+    @Param({"V1", "V2"})
+    private String schema;
+
+    private TransactionEvent event;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        event = SampleEvents.deposit(schema);
+        encoded = event.toByteArray();
+        System.out.printf("%n%s: %d bytes per event%n", schema, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return event.toByteArray();
+    }
+
+    @Benchmark
+    public TransactionEvent decode() throws InvalidProtocolBufferException {
+        return TransactionEvent.parseFrom(encoded);
+    }
+}
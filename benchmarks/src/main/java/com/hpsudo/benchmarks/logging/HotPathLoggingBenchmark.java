@@ -0,0 +1,143 @@
+package com.hpsudo.benchmarks.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import com.hpsudo.benchmarks.event.SampleEvents;
+import com.hpsudo.common.logging.LogSampling;
+import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.protobuf.TransactionType;
+import com.hpsudo.transactionservice.kafka.TransactionEventMapper;
+import com.hpsudo.transactionservice.model.Transaction;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.logging.logback.StructuredLogEncoder;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging cost of one deposit, from the balance update to the stored transaction, per {@code style}:
+ * <ul>
+ *     <li>{@code LEGACY}: the lines written for every event before structured logging, the published event's
+ *     protobuf {@code toString} and the consumed event and saved {@code Transaction} list at INFO, as plain
+ *     pattern-layout text</li>
+ *     <li>{@code STRUCTURED}: the sampled key/value success logs of {@code AccountService.updateBalance} and
+ *     {@code KafkaTransactionConsumer} at their default rate of 1%, as logstash JSON</li>
+ *     <li>{@code STRUCTURED_UNSAMPLED}: the same lines written for every event, so the gain over {@code LEGACY}
+ *     splits into what the format saves and what sampling saves</li>
+ * </ul>
+ * {@code level=WARN} shows what is left when INFO is off. Both write synchronously to a discarding stream, so the
+ * numbers include the encoding that the async appender of the {@code structured-logging} profile moves off the
+ * request thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotPathLoggingBenchmark {
+
+    private static final double SAMPLE_RATE = 0.01;
+
+    @Param({"LEGACY", "STRUCTURED", "STRUCTURED_UNSAMPLED"})
+    private String style;
+
+    @Param({"INFO", "WARN"})
+    private String level;
+
+    private LoggerContext context;
+    private Logger log;
+    private TransactionEvent event;
+    private List<Transaction> transactions;
+    private double sampleRate;
+
+    @Setup
+    public void setUp() {
+        context = new LoggerContext();
+        // StructuredLogEncoder reads its settings from the Spring environment
+        context.putObject(Environment.class.getName(), new StandardEnvironment());
+
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder());
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+
+        log = context.getLogger(HotPathLoggingBenchmark.class);
+        log.setAdditive(false);
+        log.setLevel(Level.toLevel(level));
+        log.addAppender(appender);
+
+        event = SampleEvents.deposit("V2");
+        transactions = List.of(new TransactionEventMapper().toTransaction(event));
+        sampleRate = style.equals("STRUCTURED") ? SAMPLE_RATE : 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Benchmark
+    public void deposit() {
+        if (style.equals("LEGACY")) {
+            legacy();
+        } else {
+            structured();
+        }
+    }
+
+    private void legacy() {
+        log.info("✅ Published event to Kafka: {}", event);
+        log.info("📥 Consumed event from Kafka: {}", event);
+        log.info("✅ Transactions saved: {}", transactions);
+    }
+
+    private void structured() {
+        long start = System.nanoTime();
+        if (log.isInfoEnabled() && LogSampling.sample(sampleRate)) {
+            TransactionType type = event.getTransactionType();
+            long latencyMicros = (System.nanoTime() - start) / 1_000;
+            log.atInfo()
+                    .addKeyValue("accountId", event.getAccountId())
+                    .addKeyValue("type", type)
+                    .addKeyValue("amountMinor", event.getAmountMinor())
+                    .addKeyValue("latencyMicros", latencyMicros)
+                    .log("{} of {} minor units on account {} took {} µs", type, event.getAmountMinor(),
+                            event.getAccountId(), latencyMicros);
+        }
+        if (log.isInfoEnabled() && LogSampling.sample(sampleRate)) {
+            log.atInfo()
+                    .addKeyValue("partition", 0)
+                    .addKeyValue("offset", 42L)
+                    .addKeyValue("events", transactions.size())
+                    .addKeyValue("latencyMillis", 0L)
+                    .log("✅ Saved {} transactions from {}-{}@{} in {} ms", transactions.size(),
+                            "transaction-events", 0, 42L, 0L);
+        }
+    }
+
+    private Encoder<ILoggingEvent> encoder() {
+        if (style.equals("LEGACY")) {
+            PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+            encoder.setContext(context);
+            // Spring Boot's console pattern without colors
+            encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p --- [%15.15t] %-40.40logger{39} : %m%n");
+            encoder.start();
+            return encoder;
+        }
+        StructuredLogEncoder encoder = new StructuredLogEncoder();
+        encoder.setContext(context);
+        encoder.setFormat("logstash");
+        encoder.start();
+        return encoder;
+    }
+}
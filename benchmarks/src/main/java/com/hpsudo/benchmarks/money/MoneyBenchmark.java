@@ -0,0 +1,61 @@
+package com.hpsudo.benchmarks.money;
+
+import com.hpsudo.accountservice.model.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance read-modify-write as done in {@code AccountService.retryUpdate}: the old boxed {@code Double}
+ * field against the {@code long} minor-units field now on {@link Account}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    /** Shape of the entity before the change: a boxed balance behind a getter and setter. */
+    static final class DoubleBalanceAccount {
+        private Double balance;
+
+        Double getBalance() {
+            return balance;
+        }
+
+        void setBalance(Double balance) {
+            this.balance = balance;
+        }
+    }
+
+    private DoubleBalanceAccount doubleAccount;
+    private Account account;
+    private double amount;
+    private long amountMinor;
+
+    @Setup
+    public void setUp() {
+        doubleAccount = new DoubleBalanceAccount();
+        doubleAccount.setBalance(1_000.0);
+        account = new Account();
+        account.setBalanceMinor(100_000);
+        amount = 12.34;
+        amountMinor = 1_234;
+    }
+
+    @Benchmark
+    public Double depositDouble() {
+        double updated = doubleAccount.getBalance() + amount;
+        doubleAccount.setBalance(updated);
+        return doubleAccount.getBalance();
+    }
+
+    @Benchmark
+    public long depositMinorUnits() {
+        long updated = Math.addExact(account.getBalanceMinor(), amountMinor);
+        account.setBalanceMinor(updated);
+        return account.getBalanceMinor();
+    }
+}
@@ -0,0 +1,155 @@
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Drives the account service with 1k–10k concurrent clients, each holding its own connection and issuing
+ * deposits back to back. Run it once against services started with {@code VIRTUAL_THREADS=false} and once with
+ * {@code VIRTUAL_THREADS=true} (see docker-compose.yml) and compare the printed throughput and latencies:
+ *
+ * <pre>./mvnw test -Dtest=AccountLoadIntegrationTest -Dload.enabled=true -Dload.label=virtual</pre>
+ *
+ * Client counts and requests per client are set with {@code -Dload.clients=1000,5000,10000} and
+ * {@code -Dload.requests=5}.
+ */
+@EnabledIfSystemProperty(named = "load.enabled", matches = "true")
+public class AccountLoadIntegrationTest {
+
+    private static final int ACCOUNTS = 100;
+    private static final List<Long> accountIds = new ArrayList<>();
+
+    private final String label = System.getProperty("load.label", "unlabelled");
+    private final int requestsPerClient = Integer.getInteger("load.requests", 5);
+
+    @BeforeAll
+    static void setup() {
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = 8081;
+
+        // Spread the load so the run measures request handling rather than contention on one row
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String body = """
+                {
+                  "accountHolder": "Load User %d",
+                  "balance": 0.0,
+                  "customerId": %d,
+                  "type": "CHECKING"
+                }
+            """.formatted(i, 10_000 + i);
+
+            accountIds.add(((Number) given()
+                    .contentType(ContentType.JSON)
+                    .body(body)
+                    .post("/api/accounts")
+                    .then()
+                    .statusCode(200)
+                    .extract()
+                    .path("id")).longValue());
+        }
+    }
+
+    @Test
+    void concurrentDeposits_atIncreasingClientCounts() throws InterruptedException {
+        int[] levels = Arrays.stream(System.getProperty("load.clients", "1000,5000,10000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+
+        for (int clients : levels) {
+            runLevel(clients);
+        }
+    }
+
+    private void runLevel(int clients) throws InterruptedException {
+        // Virtual threads on the client side so the driver itself is not the bottleneck at 10k clients
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .executor(executor)
+                     .build()) {
+
+            AtomicInteger ok = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            long[] latenciesNanos = new long[clients * requestsPerClient];
+            AtomicInteger next = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(clients);
+
+            for (int c = 0; c < clients; c++) {
+                long accountId = accountIds.get(c % ACCOUNTS);
+                executor.submit(() -> {
+                    try {
+                        start.await();
+                        for (int r = 0; r < requestsPerClient; r++) {
+                            long sent = System.nanoTime();
+                            if (deposit(client, accountId)) {
+                                ok.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                            latenciesNanos[next.getAndIncrement()] = System.nanoTime() - sent;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            long began = System.nanoTime();
+            start.countDown();
+            Assertions.assertTrue(done.await(10, TimeUnit.MINUTES), "Load level " + clients + " did not finish");
+            double seconds = (System.nanoTime() - began) / 1e9;
+
+            long[] latencies = Arrays.copyOf(latenciesNanos, next.get());
+            Arrays.sort(latencies);
+            System.out.printf("📈 [%s] clients=%d requests=%d ok=%d failed=%d throughput=%.0f req/s p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                    label, clients, latencies.length, ok.get(), failed.get(), ok.get() / seconds,
+                    percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.99), percentileMillis(latencies, 1.0));
+
+            Assertions.assertTrue(ok.get() > 0, "No deposit succeeded at " + clients + " clients");
+        }
+    }
+
+    private static boolean deposit(HttpClient client, long accountId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:8081/api/accounts/deposit"))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("""
+                    {"accountId": %d, "amount": 1.00}
+                """.formatted(accountId)))
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,96 @@
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+
+import static io.restassured.RestAssured.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads against the postgres / postgres-replica pair of docker-compose, with the services' replica routing enabled
+ * (the default there; READ_REPLICAS=false turns it off and these tests with it).
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReadReplicaIntegrationTest {
+
+    private static final String READ_AFTER = "X-Read-After";
+
+    private static Long accountId;
+
+    @BeforeAll
+    static void setup() {
+        RestAssured.baseURI = "http://localhost";
+        RestAssured.port = 8081;
+    }
+
+    @Test
+    @Order(1)
+    void depositThenReadWithTheHint_seesTheDeposit() {
+        accountId = ((Number) given()
+                .contentType(ContentType.JSON)
+                .body("""
+                    {
+                      "accountHolder": "Replica Reader",
+                      "balance": 100.0,
+                      "customerId": 77,
+                      "type": "CHECKING"
+                    }
+                """)
+                .post("/api/accounts")
+                .then()
+                .statusCode(200)
+                .extract()
+                .path("id")).longValue();
+
+        // Read straight after every deposit, before a replica can have replayed it
+        for (int i = 1; i <= 20; i++) {
+            String readAfter = given()
+                    .contentType(ContentType.JSON)
+                    .body("""
+                        {
+                          "accountId": %d,
+                          "amount": 10.0
+                        }
+                    """.formatted(accountId))
+                    .post("/api/accounts/deposit")
+                    .then()
+                    .statusCode(200)
+                    .header(READ_AFTER, notNullValue())
+                    .extract()
+                    .header(READ_AFTER);
+
+            given()
+                    .header(READ_AFTER, readAfter)
+                    .get("/api/accounts/" + accountId)
+                    .then()
+                    .statusCode(200)
+                    .body("balance", equalTo(100.0f + 10 * i));
+        }
+    }
+
+    @Test
+    @Order(2)
+    void readsWithoutTheHint_areServedByAReplica() throws InterruptedException {
+        double before = replicaReads();
+
+        // Page listings are not cached, so each one reaches the database
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (replicaReads() == before && System.currentTimeMillis() < deadline) {
+            get("/api/accounts?page=0&size=5").then().statusCode(200);
+            Thread.sleep(200);
+        }
+
+        assertTrue(replicaReads() > before, "No read was routed to a replica within 10s");
+    }
+
+    private static double replicaReads() {
+        return given()
+                .queryParam("tag", "target:replica")
+                .get("/actuator/metrics/datasource.read.route")
+                .then()
+                .statusCode(200)
+                .extract()
+                .jsonPath()
+                .getDouble("measurements[0].value");
+    }
+}
@@ -0,0 +1,95 @@
+package com.hpsudo.transactionservice.config;
+
+import com.hpsudo.transactionservice.exception.UndecodableEventException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    /**
+     * Error handler of both listeners; Boot applies it to the single-record factory. A record that cannot be decoded
+     * goes straight to {@code <topic>.DLT}, keyed as before so each account's records stay in order there. Any other
+     * failure, such as the database being down, is retried every {@code transaction.consumer.retry-interval-ms}
+     * until it succeeds, so no event is skipped or committed past unstored.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(
+            KafkaProperties kafkaProperties,
+            @Value("${transaction.consumer.retry-interval-ms:1000}") long retryIntervalMs) {
+        KafkaTemplate<String, byte[]> deadLetters = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                kafkaProperties.buildProducerProperties(), new StringSerializer(), new ByteArraySerializer()));
+        // No partition, so the DLT needs no more partitions than it has
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(deadLetters,
+                (record, e) -> new TopicPartition(record.topic() + ".DLT", -1));
+        DefaultErrorHandler errorHandler =
+                new DefaultErrorHandler(recoverer, new FixedBackOff(retryIntervalMs, FixedBackOff.UNLIMITED_ATTEMPTS));
+        errorHandler.addNotRetryableExceptions(UndecodableEventException.class);
+        return errorHandler;
+    }
+
+    /**
+     * Listener container for {@code KafkaTransactionBatchConsumer}: polls up to {@code max-records} events,
+     * lets the broker hold a fetch for up to {@code max-wait-ms} to fill it, and commits offsets once per batch.
+     * Runs {@code transaction.consumer.concurrency} consumers, each owning a share of the partitions, so order
+     * within a partition is kept. Consumer threads are virtual when {@code spring.threads.virtual.enabled} is set,
+     * as for Boot's own factory. Client metrics, including per-partition lag, are published as {@code kafka.consumer.*}.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> batchKafkaListenerContainerFactory(
+            KafkaProperties kafkaProperties,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            DefaultErrorHandler kafkaErrorHandler,
+            @Value("${transaction.consumer.concurrency:1}") int concurrency,
+            @Value("${transaction.consumer.batch.max-records:500}") int maxRecords,
+            @Value("${transaction.consumer.batch.max-wait-ms:200}") int maxWaitMs,
+            @Value("${transaction.consumer.batch.min-bytes:16384}") int minBytes,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        Map<String, Object> config = new HashMap<>(kafkaProperties.buildConsumerProperties());
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxRecords);
+        config.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, maxWaitMs);
+        config.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, minBytes);
+
+        DefaultKafkaConsumerFactory<String, byte[]> consumerFactory = new DefaultKafkaConsumerFactory<>(config);
+        meterRegistry.ifAvailable(registry -> consumerFactory.addListener(new MicrometerConsumerListener<>(registry)));
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setCommonErrorHandler(kafkaErrorHandler);
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor listenerExecutor = new SimpleAsyncTaskExecutor("kafka-batch-");
+            listenerExecutor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(listenerExecutor);
+        }
+        return factory;
+    }
+}
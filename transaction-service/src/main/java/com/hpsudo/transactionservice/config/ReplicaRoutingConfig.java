@@ -0,0 +1,18 @@
+package com.hpsudo.transactionservice.config;
+
+import com.hpsudo.common.datasource.ReplicaRoutingConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sends read-only transactions (history, pages, streams and point-in-time balances) to the standbys configured
+ * under {@code transaction.datasource.replicas}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "transaction.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig extends ReplicaRoutingConfiguration {
+
+    public ReplicaRoutingConfig() {
+        super("transaction.datasource.replicas");
+    }
+}
@@ -0,0 +1,22 @@
+package com.hpsudo.transactionservice.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Logs finished spans with the OpenTelemetry logging exporter. Besides this service's own requests that includes the
+ * persist spans of {@code EventLatencyTracker}, which are only created for events whose trace the account service
+ * sampled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "transaction.tracing.log-spans", havingValue = "true", matchIfMissing = true)
+public class TracingConfig {
+
+    @Bean
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
@@ -1,12 +1,30 @@
 package com.hpsudo.transactionservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.hpsudo.transactionservice.dto.BalanceResponse;
+import com.hpsudo.transactionservice.dto.DailyStatement;
+import com.hpsudo.transactionservice.dto.MonthlyStatement;
+import com.hpsudo.transactionservice.dto.RollupRebuildResponse;
+import com.hpsudo.transactionservice.dto.TransactionPage;
 import com.hpsudo.transactionservice.dto.TransactionRequest;
 import com.hpsudo.transactionservice.dto.TransactionResponse;
+import com.hpsudo.transactionservice.service.BalanceSnapshotService;
+import com.hpsudo.transactionservice.service.RollupRebuildService;
+import com.hpsudo.transactionservice.service.StatementService;
 import com.hpsudo.transactionservice.service.TransactionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 
 @RestController
@@ -14,7 +32,13 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final int STREAM_FLUSH_INTERVAL = 500;
+
     private final TransactionService service;
+    private final BalanceSnapshotService balanceService;
+    private final StatementService statementService;
+    private final RollupRebuildService rollupRebuildService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public TransactionResponse log(@RequestBody @Valid TransactionRequest request) {
@@ -25,4 +49,60 @@ public class TransactionController {
     public List<TransactionResponse> getByAccount(@PathVariable Long accountId) {
         return service.getByAccount(accountId);
     }
+
+    @GetMapping("/account/{accountId}/page")
+    public TransactionPage getPageByAccount(@PathVariable Long accountId,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "50") int size) {
+        return service.getPageByAccount(accountId, cursor, size);
+    }
+
+    @GetMapping("/account/{accountId}/balance")
+    public BalanceResponse getBalance(@PathVariable Long accountId,
+                                      @RequestParam(required = false)
+                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return balanceService.balanceAt(accountId, at == null ? LocalDateTime.now() : at);
+    }
+
+    @GetMapping("/account/{accountId}/statements/daily")
+    public List<DailyStatement> getDailyStatements(@PathVariable Long accountId,
+                                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return statementService.daily(accountId, from, to);
+    }
+
+    @GetMapping("/account/{accountId}/statements/{month}")
+    public MonthlyStatement getMonthlyStatement(@PathVariable Long accountId,
+                                                @PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return statementService.monthly(accountId, month);
+    }
+
+    @PostMapping("/rollups/rebuild")
+    public RollupRebuildResponse rebuildRollups() {
+        return rollupRebuildService.rebuild();
+    }
+
+    @GetMapping(value = "/account/{accountId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamByAccount(@PathVariable Long accountId) {
+        return out -> {
+            try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+                int[] written = {0};
+                service.streamByAccount(accountId, tx -> {
+                    try {
+                        writer.write(tx);
+                        if (++written[0] % STREAM_FLUSH_INTERVAL == 0) {
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                // The separator only goes between records; NDJSON also ends the last one with a newline.
+                writer.flush();
+                if (written[0] > 0) {
+                    out.write('\n');
+                }
+            }
+        };
+    }
 }
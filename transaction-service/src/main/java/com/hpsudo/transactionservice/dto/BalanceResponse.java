@@ -0,0 +1,12 @@
+package com.hpsudo.transactionservice.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record BalanceResponse(
+        Long accountId,
+        LocalDateTime at,
+        BigDecimal balance,
+        LocalDateTime snapshotAt,        // null when no snapshot precedes `at` and the whole history was replayed
+        long replayedTransactions
+) {}
@@ -0,0 +1,14 @@
+package com.hpsudo.transactionservice.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public record DailyStatement(
+        LocalDate day,
+        BigDecimal credits,
+        BigDecimal debits,
+        BigDecimal net,
+        long transactions,
+        BigDecimal smallestAmount,
+        BigDecimal largestAmount
+) {}
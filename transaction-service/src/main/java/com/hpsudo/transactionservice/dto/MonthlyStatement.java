@@ -0,0 +1,17 @@
+package com.hpsudo.transactionservice.dto;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+
+public record MonthlyStatement(
+        Long accountId,
+        YearMonth month,
+        BigDecimal credits,
+        BigDecimal debits,
+        BigDecimal net,
+        long transactions,
+        BigDecimal smallestAmount, // null for a month without transactions, as is largestAmount
+        BigDecimal largestAmount,
+        List<DailyStatement> days  // only days with transactions
+) {}
@@ -0,0 +1,8 @@
+package com.hpsudo.transactionservice.dto;
+
+public record RollupRebuildResponse(
+        int accounts,
+        int chunks,
+        long dailyRows,
+        long durationMs
+) {}
@@ -0,0 +1,8 @@
+package com.hpsudo.transactionservice.dto;
+
+import java.util.List;
+
+public record TransactionPage(
+        List<TransactionResponse> items,
+        String nextCursor // null on the last page
+) {}
@@ -2,6 +2,8 @@ package com.hpsudo.transactionservice.dto;
 
 import jakarta.validation.constraints.*;
 
+import java.math.BigDecimal;
+
 public record TransactionRequest(
         @NotNull(message = "Account ID is required")
         Long accountId,
@@ -11,7 +13,8 @@ public record TransactionRequest(
 
         @NotNull(message = "Amount is required")
         @PositiveOrZero(message = "Amount must be positive")
-        Double amount,
+        @Digits(integer = 16, fraction = 2, message = "Amount must have at most 2 decimal places")
+        BigDecimal amount,
 
         @NotBlank(message = "Description is required")
         String description
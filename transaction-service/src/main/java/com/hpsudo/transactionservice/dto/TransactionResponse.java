@@ -1,12 +1,15 @@
 package com.hpsudo.transactionservice.dto;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public record TransactionResponse(
         Long id,
         Long accountId,
         String type,
-        Double amount,
+        BigDecimal amount,
         String description,
-        LocalDateTime timestamp
+        LocalDateTime timestamp,
+        String transferId,
+        Long counterpartyAccountId
 ) {}
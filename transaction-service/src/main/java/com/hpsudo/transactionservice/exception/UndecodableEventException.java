@@ -0,0 +1,11 @@
+package com.hpsudo.transactionservice.exception;
+
+/**
+ * A Kafka record that cannot be turned into transactions: malformed Protobuf, an unknown payload or transaction type,
+ * or an unparseable timestamp. Retrying it cannot help, so it goes to the dead-letter topic.
+ */
+public class UndecodableEventException extends RuntimeException {
+    public UndecodableEventException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,106 @@
+package com.hpsudo.transactionservice.kafka;
+
+import com.hpsudo.transactionservice.model.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long events take to become {@code Transaction} rows, as {@code transaction.event.latency} per
+ * {@code leg}:
+ * <ul>
+ *     <li>{@code publish_to_consume}: from the record's Kafka timestamp, set by the producer on send, until a listener
+ *     receives it</li>
+ *     <li>{@code consume_to_commit}: from then until the batch's rows are committed</li>
+ *     <li>{@code end_to_end}: from the event time, taken when the account service changed the balance, until the
+ *     commit; this is the delay before a deposit shows up in the history</li>
+ * </ul>
+ * The first and last leg compare clocks of two hosts, so they are only as exact as those are in sync.
+ * <p>
+ * For events that carry a {@code traceParent} a {@code transaction persist} span covering the consume-to-commit leg is
+ * added to the trace of the originating request.
+ */
+@Component
+public class EventLatencyTracker {
+
+    // Zone the mapper converted the event time to
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final Timer publishToConsume;
+    private final Timer consumeToCommit;
+    private final Timer endToEnd;
+    private final ObjectProvider<Tracer> tracer;
+
+    public EventLatencyTracker(MeterRegistry meterRegistry, ObjectProvider<Tracer> tracer) {
+        this.publishToConsume = latencyTimer(meterRegistry, "publish_to_consume");
+        this.consumeToCommit = latencyTimer(meterRegistry, "consume_to_commit");
+        this.endToEnd = latencyTimer(meterRegistry, "end_to_end");
+        this.tracer = tracer;
+    }
+
+    public void consumed(ConsumerRecord<?, ?> record, long consumedAtMillis) {
+        // A topic with LogAppendTime has the broker's time instead, which leaves out the send
+        if (record.timestampType() == TimestampType.CREATE_TIME) {
+            publishToConsume.record(Math.max(0, consumedAtMillis - record.timestamp()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void committed(List<Transaction> transactions, long consumedAtMillis) {
+        long now = System.currentTimeMillis();
+        consumeToCommit.record(now - consumedAtMillis, TimeUnit.MILLISECONDS);
+
+        Tracer current = tracer.getIfAvailable();
+        for (Transaction tx : transactions) {
+            long eventMillis = tx.getTimestamp().atZone(ZONE).toInstant().toEpochMilli();
+            endToEnd.record(Math.max(0, now - eventMillis), TimeUnit.MILLISECONDS);
+            if (current != null && tx.getTraceParent() != null) {
+                persistSpan(current, tx, consumedAtMillis);
+            }
+        }
+    }
+
+    private static void persistSpan(Tracer tracer, Transaction tx, long startMillis) {
+        TraceContext parent = parseTraceParent(tracer, tx.getTraceParent());
+        if (parent == null) {
+            return;
+        }
+        tracer.spanBuilder()
+                .setParent(parent)
+                .name("transaction persist")
+                .kind(Span.Kind.CONSUMER)
+                .tag("transaction.type", tx.getType())
+                .startTimestamp(startMillis, TimeUnit.MILLISECONDS)
+                .start()
+                .end();
+    }
+
+    // 00-<32 hex trace id>-<16 hex span id>-<flags>
+    private static TraceContext parseTraceParent(Tracer tracer, String traceParent) {
+        String[] parts = traceParent.split("-");
+        if (parts.length != 4 || parts[1].length() != 32 || parts[2].length() != 16) {
+            return null;
+        }
+        return tracer.traceContextBuilder()
+                .traceId(parts[1])
+                .spanId(parts[2])
+                .sampled(true)
+                .build();
+    }
+
+    private static Timer latencyTimer(MeterRegistry meterRegistry, String leg) {
+        return Timer.builder("transaction.event.latency")
+                .tag("leg", leg)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,127 @@
+package com.hpsudo.transactionservice.kafka;
+
+import com.hpsudo.common.logging.LogSampling;
+import com.hpsudo.transactionservice.exception.UndecodableEventException;
+import com.hpsudo.transactionservice.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decodes a whole poll of events and writes them with a single batched insert.
+ * Offsets are committed once the batch has been stored; a failed insert is rethrown so the
+ * container's error handler redelivers the batch instead of committing past it. A batch that is
+ * redelivered after its rows were committed is absorbed by the insert's event-id dedup, so each
+ * event is counted once.
+ * <p>
+ * A record that cannot be decoded is never skipped: the records before it are stored, and it is reported as the
+ * batch's failed record, which the error handler sends to the dead-letter topic before redelivering the rest.
+ * <p>
+ * Publishes {@code transaction.consumer.records} per partition (its rate is the per-partition throughput, in records;
+ * a {@code TransactionEventBatch} record counts once) and {@code transaction.consumer.batch} for the time taken to decode and store each batch.
+ * {@code transaction.consumer.stage} splits that time into {@code parse} and {@code persist}, with percentile
+ * histograms. Stored batches are logged at {@code transaction.logging.sample-rate.batch}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction.consumer.batch.enabled", havingValue = "true", matchIfMissing = true)
+public class KafkaTransactionBatchConsumer {
+
+    private final KeyOrderedTransactionWriter writer;
+    private final TransactionEventMapper mapper;
+    private final MeterRegistry meterRegistry;
+    private final EventLatencyTracker latency;
+    private final Timer parseTimer;
+    private final Timer persistTimer;
+    private final double logRate;
+
+    public KafkaTransactionBatchConsumer(KeyOrderedTransactionWriter writer,
+                                         TransactionEventMapper mapper,
+                                         MeterRegistry meterRegistry,
+                                         EventLatencyTracker latency,
+                                         @Value("${transaction.logging.sample-rate.batch:1.0}") double logRate) {
+        this.writer = writer;
+        this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+        this.latency = latency;
+        this.parseTimer = stageTimer(meterRegistry, "batch", "parse");
+        this.persistTimer = stageTimer(meterRegistry, "batch", "persist");
+        this.logRate = logRate;
+    }
+
+    @KafkaListener(topics = "transaction-events", groupId = "transaction-service",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consume(List<ConsumerRecord<String, byte[]>> records) {
+        long consumedAt = System.currentTimeMillis();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        countByPartition(records);
+
+        Timer.Sample parse = Timer.start(meterRegistry);
+        List<Transaction> transactions = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            latency.consumed(record, consumedAt);
+            try {
+                transactions.addAll(mapper.decode(record));
+            } catch (UndecodableEventException e) {
+                parse.stop(parseTimer);
+                // The error handler commits the offsets before the failed record, so those must be stored first
+                store(transactions, i, consumedAt);
+                throw new BatchListenerFailedException(e.getMessage(), e, record);
+            }
+        }
+        parse.stop(parseTimer);
+
+        store(transactions, records.size(), consumedAt);
+        sample.stop(meterRegistry.timer("transaction.consumer.batch"));
+    }
+
+    private void store(List<Transaction> transactions, int records, long consumedAt) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        persistTimer.record(() -> writer.write(transactions));
+        latency.committed(transactions, consumedAt);
+        if (log.isInfoEnabled() && LogSampling.sample(logRate)) {
+            long latencyMillis = System.currentTimeMillis() - consumedAt;
+            log.atInfo()
+                    .addKeyValue("records", records)
+                    .addKeyValue("events", transactions.size())
+                    .addKeyValue("latencyMillis", latencyMillis)
+                    .log("✅ Saved {} transactions from a batch of {} records in {} ms", transactions.size(),
+                            records, latencyMillis);
+        }
+    }
+
+    static Timer stageTimer(MeterRegistry meterRegistry, String listener, String stage) {
+        return Timer.builder("transaction.consumer.stage")
+                .tag("listener", listener)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void countByPartition(List<ConsumerRecord<String, byte[]>> records) {
+        Map<Integer, Integer> perPartition = new TreeMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            perPartition.merge(record.partition(), 1, Integer::sum);
+        }
+        perPartition.forEach((partition, count) -> Counter.builder("transaction.consumer.records")
+                .tag("topic", records.get(0).topic())
+                .tag("partition", String.valueOf(partition))
+                .register(meterRegistry)
+                .increment(count));
+    }
+}
@@ -1,46 +1,77 @@
 package com.hpsudo.transactionservice.kafka;
 
-import com.google.protobuf.InvalidProtocolBufferException;
-import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.common.logging.LogSampling;
 import com.hpsudo.transactionservice.model.Transaction;
-import com.hpsudo.transactionservice.repository.TransactionRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
+import java.util.List;
 
+/**
+ * One-record-at-a-time listener, kept as a fallback for {@link KafkaTransactionBatchConsumer}.
+ * Enabled with {@code transaction.consumer.batch.enabled=false}. Publishes the same {@code transaction.consumer.stage}
+ * timers, tagged {@code listener=single}. A fraction ({@code transaction.logging.sample-rate.record}) of the stored
+ * records is logged. A record that cannot be decoded is left to the error handler, which sends it to the dead-letter
+ * topic.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "transaction.consumer.batch.enabled", havingValue = "false")
 public class KafkaTransactionConsumer {
 
-    private final TransactionRepository repository;
+    private final KeyOrderedTransactionWriter writer;
+    private final TransactionEventMapper mapper;
+    private final MeterRegistry meterRegistry;
+    private final EventLatencyTracker latency;
+    private final Timer parseTimer;
+    private final Timer persistTimer;
+    private final double logRate;
 
-    @KafkaListener(topics = "transaction-events", groupId = "transaction-service")
+    public KafkaTransactionConsumer(KeyOrderedTransactionWriter writer,
+                                    TransactionEventMapper mapper,
+                                    MeterRegistry meterRegistry,
+                                    EventLatencyTracker latency,
+                                    @Value("${transaction.logging.sample-rate.record:0.01}") double logRate) {
+        this.writer = writer;
+        this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+        this.latency = latency;
+        this.parseTimer = KafkaTransactionBatchConsumer.stageTimer(meterRegistry, "single", "parse");
+        this.persistTimer = KafkaTransactionBatchConsumer.stageTimer(meterRegistry, "single", "persist");
+        this.logRate = logRate;
+    }
+
+    @KafkaListener(topics = "transaction-events", groupId = "transaction-service",
+            concurrency = "${transaction.consumer.concurrency:1}")
     public void consume(ConsumerRecord<String, byte[]> record) {
+        long consumedAt = System.currentTimeMillis();
+        latency.consumed(record, consumedAt);
+        List<Transaction> transactions;
+        Timer.Sample parse = Timer.start(meterRegistry);
         try {
-            TransactionEvent event = TransactionEvent.parseFrom(record.value());
-            log.info("📥 Consumed event from Kafka: {}", event);
-
-            Transaction tx = Transaction.builder()
-                    .accountId(event.getAccountId())
-                    .type(event.getType())
-                    .amount(event.getAmount())
-                    .description(event.getDescription())
-                    .timestamp(OffsetDateTime.parse(event.getTimestamp()).toLocalDateTime())
-                    .build();
-
-            repository.save(tx);
-            log.info("✅ Transaction saved: {}", tx);
+            transactions = mapper.decode(record);
+        } finally {
+            parse.stop(parseTimer);
+        }
 
-        } catch (InvalidProtocolBufferException e) {
-            log.error("❌ Failed to parse Protobuf message", e);
-        } catch (Exception e) {
-            log.error("❌ Error while saving transaction", e);
+        // Same deduplicating insert as the batch path; a failure is rethrown so the offset is not committed.
+        persistTimer.record(() -> writer.write(transactions));
+        latency.committed(transactions, consumedAt);
+        if (log.isInfoEnabled() && LogSampling.sample(logRate)) {
+            long latencyMillis = System.currentTimeMillis() - consumedAt;
+            log.atInfo()
+                    .addKeyValue("partition", record.partition())
+                    .addKeyValue("offset", record.offset())
+                    .addKeyValue("events", transactions.size())
+                    .addKeyValue("latencyMillis", latencyMillis)
+                    .log("✅ Saved {} transactions from {}-{}@{} in {} ms", transactions.size(),
+                            record.topic(), record.partition(), record.offset(), latencyMillis);
         }
     }
 }
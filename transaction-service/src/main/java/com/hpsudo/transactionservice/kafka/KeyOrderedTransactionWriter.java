@@ -0,0 +1,103 @@
+package com.hpsudo.transactionservice.kafka;
+
+import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.repository.TransactionBatchRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores the decoded batches of {@link KafkaTransactionBatchConsumer}. By default a batch is one insert.
+ * <p>
+ * With {@code transaction.consumer.parallel.enabled} a batch is split into lanes by {@code accountId}, and the lanes
+ * are inserted concurrently, at most {@code transaction.consumer.parallel.workers} at a time: on a pool of that many
+ * threads, or with virtual threads on a new virtual thread per lane behind a semaphore of that many permits, since
+ * virtual threads are not meant to be pooled. An account always maps to the same lane, so its events keep their order. If any lane fails the exception is rethrown and the whole batch is
+ * redelivered; rows from lanes that did commit are then dropped by the event-id dedup.
+ */
+@Component
+public class KeyOrderedTransactionWriter {
+
+    private final TransactionBatchRepository batchRepository;
+    private final int lanes;
+    private final Executor executor;
+    // Only set with virtual threads; a platform pool is bounded by its size
+    private final Semaphore permits;
+
+    public KeyOrderedTransactionWriter(TransactionBatchRepository batchRepository,
+                                       @Value("${transaction.consumer.parallel.enabled:false}") boolean parallel,
+                                       @Value("${transaction.consumer.parallel.workers:8}") int workers,
+                                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.batchRepository = batchRepository;
+        this.lanes = parallel ? workers : 1;
+        if (!parallel) {
+            this.executor = null;
+            this.permits = null;
+        } else if (virtualThreads) {
+            this.executor = new VirtualThreadTaskExecutor("transaction-writer-");
+            this.permits = new Semaphore(workers);
+        } else {
+            this.executor = Executors.newFixedThreadPool(workers);
+            this.permits = null;
+        }
+    }
+
+    public void write(List<Transaction> transactions) {
+        if (executor == null || transactions.size() == 1) {
+            batchRepository.insertAll(transactions);
+            return;
+        }
+
+        List<List<Transaction>> byLane = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (Transaction tx : transactions) {
+            byLane.get(Math.floorMod(Long.hashCode(tx.getAccountId()), lanes)).add(tx);
+        }
+
+        CompletableFuture<?>[] inserts = byLane.stream()
+                .filter(lane -> !lane.isEmpty())
+                .map(lane -> CompletableFuture.runAsync(() -> insertLane(lane), executor))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(inserts).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void insertLane(List<Transaction> lane) {
+        if (permits == null) {
+            batchRepository.insertAll(lane);
+            return;
+        }
+        // Concurrent batches of several listener threads share the permits, which bounds the connections used
+        permits.acquireUninterruptibly();
+        try {
+            batchRepository.insertAll(lane);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor instanceof ExecutorService pool) {
+            pool.shutdown();
+        }
+    }
+}
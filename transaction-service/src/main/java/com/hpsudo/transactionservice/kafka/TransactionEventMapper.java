@@ -0,0 +1,109 @@
+package com.hpsudo.transactionservice.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.hpsudo.common.money.Money;
+import com.hpsudo.protobuf.EventHeaders;
+import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.protobuf.TransactionEventBatch;
+import com.hpsudo.protobuf.TransactionType;
+import com.hpsudo.transactionservice.exception.UndecodableEventException;
+import com.hpsudo.transactionservice.model.Transaction;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Maps both event layouts: current producers set {@code timestampMicros} and {@code transactionType}, older ones the
+ * ISO-8601 {@code timestamp} and {@code type} strings. Either may be on the topic while producers are being upgraded.
+ * Records are either a single event or, from producers in high-throughput mode, a {@link TransactionEventBatch}.
+ * Both timestamp layouts are stored as local time of the same zone, whatever offset a legacy producer wrote.
+ */
+@Component
+public class TransactionEventMapper {
+
+    // Zone that event times are stored in, as the LocalDateTime column has none
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /**
+     * The transactions of one record, in publish order.
+     *
+     * @throws UndecodableEventException if the record is malformed or of a type this consumer does not know
+     */
+    public List<Transaction> decode(ConsumerRecord<String, byte[]> record) {
+        try {
+            return decodeValue(record);
+        } catch (InvalidProtocolBufferException | DateTimeParseException | IllegalArgumentException e) {
+            throw new UndecodableEventException("Cannot decode " + record.topic() + "-" + record.partition() + "@"
+                    + record.offset() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private List<Transaction> decodeValue(ConsumerRecord<String, byte[]> record) throws InvalidProtocolBufferException {
+        Header payloadType = record.headers().lastHeader(EventHeaders.PAYLOAD_TYPE);
+        if (payloadType == null) {
+            return List.of(toTransaction(TransactionEvent.parseFrom(record.value())));
+        }
+        String type = new String(payloadType.value(), StandardCharsets.UTF_8);
+        if (!EventHeaders.BATCH.equals(type)) {
+            throw new IllegalArgumentException("Unknown payload type " + type);
+        }
+        return TransactionEventBatch.parseFrom(record.value()).getEventsList().stream()
+                .map(this::toTransaction)
+                .toList();
+    }
+
+    public Transaction toTransaction(TransactionEvent event) {
+        return Transaction.builder()
+                .eventId(event.getEventId().isEmpty() ? null : event.getEventId())
+                .accountId(event.getAccountId())
+                .type(type(event))
+                .amountMinor(amountMinor(event))
+                .description(event.getDescription())
+                .transferId(event.getTransferId().isEmpty() ? null : event.getTransferId())
+                .counterpartyAccountId(event.getCounterpartyAccountId() == 0 ? null : event.getCounterpartyAccountId())
+                .timestamp(timestamp(event))
+                .traceParent(event.getTraceParent().isEmpty() ? null : event.getTraceParent())
+                .build();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String type(TransactionEvent event) {
+        TransactionType type = event.getTransactionType();
+        if (type == TransactionType.TRANSACTION_TYPE_UNSPECIFIED) {
+            return event.getType();
+        }
+        if (type == TransactionType.UNRECOGNIZED) {
+            throw new IllegalArgumentException("Unknown transaction type " + event.getTransactionTypeValue());
+        }
+        return type.name();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static LocalDateTime timestamp(TransactionEvent event) {
+        long micros = event.getTimestampMicros();
+        if (micros == 0) {
+            return OffsetDateTime.parse(event.getTimestamp()).atZoneSameInstant(ZONE).toLocalDateTime();
+        }
+        Instant instant = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000L);
+        return LocalDateTime.ofInstant(instant, ZONE);
+    }
+
+    // Events from producers that predate amountMinor only carry the deprecated double amount.
+    @SuppressWarnings("deprecation")
+    private static long amountMinor(TransactionEvent event) {
+        if (event.getAmountMinor() != 0 || event.getAmount() == 0) {
+            return event.getAmountMinor();
+        }
+        return Money.toMinorUnits(BigDecimal.valueOf(event.getAmount()).setScale(Money.SCALE, RoundingMode.HALF_EVEN));
+    }
+}
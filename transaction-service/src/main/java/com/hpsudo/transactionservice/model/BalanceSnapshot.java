@@ -0,0 +1,35 @@
+package com.hpsudo.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An account's balance after all of its transactions up to and including position
+ * {@code (snapshotAt, lastTransactionId)} in {@code (timestamp, id)} order. Written every
+ * {@code transaction.balance.snapshot.every} transactions by {@code BalanceSnapshotService}.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_balance_snapshot_account_position",
+        columnList = "accountId, snapshotAt desc, lastTransactionId desc"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_snapshot_seq")
+    @SequenceGenerator(name = "balance_snapshot_seq", sequenceName = "balance_snapshot_seq", allocationSize = 50)
+    private Long id;
+
+    private Long accountId;
+
+    private LocalDateTime snapshotAt;
+
+    private Long lastTransactionId;
+
+    // Minor units (cents), see Money.
+    private long balanceMinor;
+}
@@ -0,0 +1,19 @@
+package com.hpsudo.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * An account with transactions its balance snapshots have not been rolled forward over yet. Written in the same
+ * transaction as the rows and removed by {@code BalanceSnapshotService}, so a mark survives a restart.
+ */
+@Entity
+@Table(name = "balance_snapshot_dirty")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSnapshotDirty {
+
+    @Id
+    private Long accountId;
+}
@@ -0,0 +1,8 @@
+package com.hpsudo.transactionservice.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transaction reduced to its position and its signed effect on the balance.
+ */
+public record BalanceStep(Long id, LocalDateTime timestamp, long deltaMinor) {}
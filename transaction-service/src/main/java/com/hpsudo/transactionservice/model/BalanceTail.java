@@ -0,0 +1,6 @@
+package com.hpsudo.transactionservice.model;
+
+/**
+ * Number of transactions replayed on top of a snapshot and their summed signed effect.
+ */
+public record BalanceTail(long transactions, long deltaMinor) {}
@@ -0,0 +1,73 @@
+package com.hpsudo.transactionservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Totals of one account's transactions on one day, kept up to date by the consumer. Statements read these rows
+ * instead of the raw history; a month is at most 31 of them.
+ */
+@Entity
+@Table(name = "daily_rollup")
+@IdClass(DailyRollup.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyRollup {
+
+    public static final Set<String> CREDIT_TYPES = Set.of("DEPOSIT", "TRANSFER_IN", "OPENING_BALANCE");
+    public static final Set<String> DEBIT_TYPES = Set.of("WITHDRAW", "TRANSFER_OUT");
+
+    @Id
+    private Long accountId;
+
+    @Id
+    @Column(name = "rollup_day")
+    private LocalDate day;
+
+    // All amounts in minor units (cents), see Money.
+    private long creditsMinor;
+
+    private long debitsMinor;
+
+    private long transactionCount;
+
+    private long minAmountMinor;
+
+    private long maxAmountMinor;
+
+    public DailyRollup(Long accountId, LocalDate day) {
+        this(accountId, day, 0, 0, 0, Long.MAX_VALUE, Long.MIN_VALUE);
+    }
+
+    public void add(String type, long amountMinor) {
+        if (CREDIT_TYPES.contains(type)) {
+            creditsMinor = Math.addExact(creditsMinor, amountMinor);
+        } else if (DEBIT_TYPES.contains(type)) {
+            debitsMinor = Math.addExact(debitsMinor, amountMinor);
+        }
+        transactionCount++;
+        minAmountMinor = Math.min(minAmountMinor, amountMinor);
+        maxAmountMinor = Math.max(maxAmountMinor, amountMinor);
+    }
+
+    public void merge(DailyRollup other) {
+        creditsMinor = Math.addExact(creditsMinor, other.creditsMinor);
+        debitsMinor = Math.addExact(debitsMinor, other.debitsMinor);
+        transactionCount += other.transactionCount;
+        minAmountMinor = Math.min(minAmountMinor, other.minAmountMinor);
+        maxAmountMinor = Math.max(maxAmountMinor, other.maxAmountMinor);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long accountId;
+        private LocalDate day;
+    }
+}
@@ -5,23 +5,45 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(
+        indexes = @Index(name = "idx_transaction_account_timestamp_id", columnList = "accountId, timestamp desc, id desc"),
+        // Includes the partition key so it can exist on the partitioned table; a redelivered event has the same timestamp
+        uniqueConstraints = @UniqueConstraint(name = "uk_transaction_event_id_timestamp", columnNames = {"event_id", "timestamp"}))
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
 
+    // Shares the sequence behind the old identity column so existing rows keep their ids, and lets
+    // TransactionBatchRepository assign ids inline with nextval().
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_id_seq")
+    @SequenceGenerator(name = "transaction_id_seq", sequenceName = "transaction_id_seq", allocationSize = 1)
     private Long id;
 
+    // TransactionEvent.eventId; null for rows logged through the REST API and events from older producers
+    @Column(name = "event_id", length = 36)
+    private String eventId;
+
     private Long accountId;
 
-    private String type; // DEPOSIT, WITHDRAW, TRANSFER
+    private String type; // DEPOSIT, WITHDRAW, TRANSFER_OUT, TRANSFER_IN
 
-    private Double amount;
+    // Minor units (cents), see Money.
+    @Column(name = "amount_minor")
+    private long amountMinor;
 
     private String description;
 
+    // Both legs of a transfer share the transfer id; null for deposits and withdrawals.
+    private String transferId;
+
+    private Long counterpartyAccountId;
+
     private LocalDateTime timestamp;
+
+    // W3C traceparent carried by the event, for the consumer's tracing only; not stored.
+    @Transient
+    private String traceParent;
 }
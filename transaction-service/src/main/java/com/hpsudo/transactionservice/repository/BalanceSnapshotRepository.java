@@ -0,0 +1,35 @@
+package com.hpsudo.transactionservice.repository;
+
+import com.hpsudo.transactionservice.model.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    Optional<BalanceSnapshot> findFirstByAccountIdOrderBySnapshotAtDescLastTransactionIdDesc(Long accountId);
+
+    Optional<BalanceSnapshot> findFirstByAccountIdAndSnapshotAtLessThanEqualOrderBySnapshotAtDescLastTransactionIdDesc(
+            Long accountId, LocalDateTime at);
+
+    /**
+     * Serializes snapshot writes and invalidations of one account until the end of the current transaction.
+     */
+    @Query(value = "SELECT pg_advisory_xact_lock(:accountId)", nativeQuery = true)
+    Object lockAccount(@Param("accountId") Long accountId);
+
+    @Query(value = "SELECT account_id FROM balance_snapshot_dirty", nativeQuery = true)
+    List<Long> findDirtyAccountIds();
+
+    /**
+     * Removes the account's dirty mark; call with the account lock held, so a batch committing later marks it again.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM balance_snapshot_dirty WHERE account_id = :accountId", nativeQuery = true)
+    int clearDirty(@Param("accountId") Long accountId);
+}
@@ -0,0 +1,12 @@
+package com.hpsudo.transactionservice.repository;
+
+import com.hpsudo.transactionservice.model.DailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyRollupRepository extends JpaRepository<DailyRollup, DailyRollup.Key> {
+
+    List<DailyRollup> findByAccountIdAndDayBetweenOrderByDay(Long accountId, LocalDate from, LocalDate to);
+}
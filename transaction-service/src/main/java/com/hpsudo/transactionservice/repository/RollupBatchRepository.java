@@ -0,0 +1,110 @@
+package com.hpsudo.transactionservice.repository;
+
+import com.hpsudo.transactionservice.model.DailyRollup;
+import com.hpsudo.transactionservice.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC writes of {@link DailyRollup} rows. Callers hold the account locks of {@link TransactionBatchRepository#lockAccounts}
+ * so an incremental update never interleaves with a rebuild of the same account.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RollupBatchRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO daily_rollup (account_id, rollup_day, credits_minor, debits_minor, transaction_count,
+                                      min_amount_minor, max_amount_minor)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (account_id, rollup_day) DO UPDATE SET
+                credits_minor = daily_rollup.credits_minor + EXCLUDED.credits_minor,
+                debits_minor = daily_rollup.debits_minor + EXCLUDED.debits_minor,
+                transaction_count = daily_rollup.transaction_count + EXCLUDED.transaction_count,
+                min_amount_minor = LEAST(daily_rollup.min_amount_minor, EXCLUDED.min_amount_minor),
+                max_amount_minor = GREATEST(daily_rollup.max_amount_minor, EXCLUDED.max_amount_minor)
+            """;
+
+    private static final String DELETE_SQL = "DELETE FROM daily_rollup WHERE account_id = ANY (?) AND rollup_day >= ?";
+
+    private static final String REBUILD_SQL = """
+            INSERT INTO daily_rollup (account_id, rollup_day, credits_minor, debits_minor, transaction_count,
+                                      min_amount_minor, max_amount_minor)
+            SELECT account_id, CAST(timestamp AS DATE),
+                   SUM(CASE WHEN type IN (%s) THEN amount_minor ELSE 0 END),
+                   SUM(CASE WHEN type IN (%s) THEN amount_minor ELSE 0 END),
+                   COUNT(*), MIN(amount_minor), MAX(amount_minor)
+            FROM transaction
+            WHERE account_id = ANY (?) AND timestamp >= ?
+            GROUP BY account_id, CAST(timestamp AS DATE)
+            """.formatted(sqlList(DailyRollup.CREDIT_TYPES), sqlList(DailyRollup.DEBIT_TYPES));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds newly stored transactions to their days' totals, one upsert per account and day.
+     */
+    public void add(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Map<DailyRollup.Key, DailyRollup> byDay = new LinkedHashMap<>();
+        for (Transaction tx : transactions) {
+            DailyRollup.Key key = new DailyRollup.Key(tx.getAccountId(), tx.getTimestamp().toLocalDate());
+            byDay.computeIfAbsent(key, k -> new DailyRollup(k.getAccountId(), k.getDay()))
+                    .add(tx.getType(), tx.getAmountMinor());
+        }
+        // Same row order in every transaction, so concurrent upserts cannot deadlock
+        List<DailyRollup> rows = byDay.values().stream()
+                .sorted(Comparator.comparing(DailyRollup::getAccountId).thenComparing(DailyRollup::getDay))
+                .toList();
+
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, rows.size(), (ps, rollup) -> {
+            ps.setLong(1, rollup.getAccountId());
+            ps.setDate(2, Date.valueOf(rollup.getDay()));
+            ps.setLong(3, rollup.getCreditsMinor());
+            ps.setLong(4, rollup.getDebitsMinor());
+            ps.setLong(5, rollup.getTransactionCount());
+            ps.setLong(6, rollup.getMinAmountMinor());
+            ps.setLong(7, rollup.getMaxAmountMinor());
+        });
+    }
+
+    /**
+     * Replaces the rollups of {@code accountIds} from {@code fromDay} on with totals recomputed from their raw history.
+     *
+     * @return the number of daily rows written
+     */
+    public int rebuild(List<Long> accountIds, LocalDate fromDay) {
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            Array ids = con.createArrayOf("bigint", accountIds.toArray());
+            try (var delete = con.prepareStatement(DELETE_SQL); var insert = con.prepareStatement(REBUILD_SQL)) {
+                delete.setArray(1, ids);
+                delete.setDate(2, Date.valueOf(fromDay));
+                delete.executeUpdate();
+                insert.setArray(1, ids);
+                insert.setTimestamp(2, Timestamp.valueOf(fromDay.atStartOfDay()));
+                return insert.executeUpdate();
+            } finally {
+                ids.free();
+            }
+        });
+    }
+
+    private static String sqlList(Set<String> values) {
+        return values.stream().sorted().map(value -> "'" + value + "'").collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,214 @@
+package com.hpsudo.transactionservice.repository;
+
+import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.service.TransactionPartitionManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC batch writer for the consumer path. The batch is passed as column arrays and {@code unnest}ed into a single
+ * insert, with ids from {@code nextval} inside the statement, so it is one round trip. Events that are already
+ * stored, e.g. redelivered after a rebalance, are dropped by the unique {@code (event_id, timestamp)} constraint in
+ * the same statement, without a read per event; the statement returns the event ids it did store, and only those
+ * rows are added to the daily rollups.
+ * <p>
+ * The batch first takes an advisory lock per account, shared with the balance snapshot job and the rollup rebuild.
+ * Rows older than half the balance snapshot settle window are late: any snapshot at or after them may already be
+ * missing their amount, so those snapshots are deleted in the same transaction and rebuilt by
+ * {@code BalanceSnapshotService}. Half the window leaves the snapshot job a margin over in-flight batches. The
+ * batch's accounts are marked in {@code balance_snapshot_dirty} for that job in the same transaction.
+ * <p>
+ * With partitioning enabled, rows no attached partition covers go to {@code transaction_overflow} instead (see
+ * {@code TransactionPartitionManager}). They are kept for inspection and are not part of balances, snapshots or
+ * rollups.
+ */
+@Slf4j
+@Repository
+public class TransactionBatchRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO %s (id, event_id, account_id, type, amount_minor, description, timestamp,
+                                     transfer_id, counterparty_account_id)
+            SELECT nextval('transaction_id_seq'), b.event_id, b.account_id, b.type, b.amount_minor, b.description,
+                   b.timestamp, b.transfer_id, b.counterparty_account_id
+            FROM unnest(?, ?, ?, ?, ?, ?, ?, ?) WITH ORDINALITY
+                 AS b(event_id, account_id, type, amount_minor, description, timestamp, transfer_id,
+                      counterparty_account_id, position)
+            ORDER BY b.position
+            ON CONFLICT (event_id, timestamp) DO NOTHING
+            RETURNING event_id
+            """;
+
+    private static final String INSERT_TRANSACTION_SQL = INSERT_SQL.formatted("transaction");
+    private static final String INSERT_OVERFLOW_SQL = INSERT_SQL.formatted("transaction_overflow");
+
+    // Locks in account id order, so batches and jobs touching the same accounts cannot deadlock
+    private static final String LOCK_ACCOUNTS_SQL = """
+            SELECT pg_advisory_xact_lock(id) FROM (SELECT DISTINCT unnest(?) AS id ORDER BY id) ids
+            """;
+
+    private static final String MARK_DIRTY_SQL = """
+            INSERT INTO balance_snapshot_dirty (account_id) SELECT DISTINCT unnest(?)
+            ON CONFLICT (account_id) DO NOTHING
+            """;
+
+    private static final String INVALIDATE_SNAPSHOTS_SQL =
+            "DELETE FROM balance_snapshot WHERE account_id = ? AND snapshot_at >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RollupBatchRepository rollupRepository;
+    private final ObjectProvider<TransactionPartitionManager> partitionManager;
+    private final long lateAfterSeconds;
+
+    public TransactionBatchRepository(JdbcTemplate jdbcTemplate,
+                                      RollupBatchRepository rollupRepository,
+                                      ObjectProvider<TransactionPartitionManager> partitionManager,
+                                      @Value("${transaction.balance.snapshot.settle-seconds:300}") long settleSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollupRepository = rollupRepository;
+        this.partitionManager = partitionManager;
+        this.lateAfterSeconds = settleSeconds / 2;
+    }
+
+    @Transactional
+    public void insertAll(List<Transaction> transactions) {
+        List<Long> accountIds = transactions.stream().map(Transaction::getAccountId).toList();
+        lockAccounts(accountIds);
+        List<Transaction> rows = withoutOverflow(transactions);
+        if (rows.isEmpty()) {
+            return;
+        }
+        invalidateSnapshotsForLateRows(rows);
+        Set<String> stored = jdbcTemplate.execute(
+                (ConnectionCallback<Set<String>>) con -> insert(con, INSERT_TRANSACTION_SQL, rows));
+        rollupRepository.add(storedRows(rows, stored));
+        markSnapshotsDirty(rows.stream().map(Transaction::getAccountId).toList());
+    }
+
+    // Stores the rows no partition covers in the overflow table and returns the others
+    private List<Transaction> withoutOverflow(List<Transaction> transactions) {
+        TransactionPartitionManager partitions = partitionManager.getIfAvailable();
+        if (partitions == null) {
+            return transactions;
+        }
+        Map<Boolean, List<Transaction>> byRoute = transactions.stream()
+                .collect(Collectors.partitioningBy(tx -> partitions.accepts(tx.getTimestamp())));
+        List<Transaction> overflow = byRoute.get(false);
+        if (!overflow.isEmpty()) {
+            jdbcTemplate.execute((ConnectionCallback<Set<String>>) con -> insert(con, INSERT_OVERFLOW_SQL, overflow));
+            log.warn("Stored {} transactions outside the partitioned range in transaction_overflow, first at {}",
+                    overflow.size(), overflow.get(0).getTimestamp());
+        }
+        return byRoute.get(true);
+    }
+
+    /**
+     * Takes the per-account advisory locks until the end of the current transaction.
+     */
+    public void lockAccounts(Collection<Long> accountIds) {
+        withIds(accountIds, LOCK_ACCOUNTS_SQL, ps -> ps.executeQuery().close());
+    }
+
+    /**
+     * Queues the accounts for {@code BalanceSnapshotService}; call with their locks held.
+     */
+    public void markSnapshotsDirty(Collection<Long> accountIds) {
+        withIds(accountIds, MARK_DIRTY_SQL, PreparedStatement::executeUpdate);
+    }
+
+    private void withIds(Collection<Long> accountIds, String sql, StatementCallback callback) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            Array ids = con.createArrayOf("bigint", accountIds.toArray());
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                ps.setArray(1, ids);
+                callback.run(ps);
+            } finally {
+                ids.free();
+            }
+            return null;
+        });
+    }
+
+    private static Set<String> insert(Connection con, String sql, List<Transaction> transactions) throws SQLException {
+        List<Array> columns = List.of(
+                column(con, "varchar", transactions, Transaction::getEventId),
+                column(con, "bigint", transactions, Transaction::getAccountId),
+                column(con, "varchar", transactions, Transaction::getType),
+                column(con, "bigint", transactions, Transaction::getAmountMinor),
+                column(con, "varchar", transactions, Transaction::getDescription),
+                column(con, "timestamp", transactions, tx -> Timestamp.valueOf(tx.getTimestamp())),
+                column(con, "varchar", transactions, Transaction::getTransferId),
+                column(con, "bigint", transactions, Transaction::getCounterpartyAccountId));
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (int i = 0; i < columns.size(); i++) {
+                ps.setArray(i + 1, columns.get(i));
+            }
+            Set<String> stored = new HashSet<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stored.add(rs.getString(1));
+                }
+            }
+            return stored;
+        } finally {
+            for (Array column : columns) {
+                column.free();
+            }
+        }
+    }
+
+    private static Array column(Connection con, String type, List<Transaction> transactions,
+                                Function<Transaction, Object> value) throws SQLException {
+        return con.createArrayOf(type, transactions.stream().map(value).toArray());
+    }
+
+    // Rows without an event id never conflict; of duplicates within the batch only the first was stored.
+    private static List<Transaction> storedRows(List<Transaction> transactions, Set<String> storedEventIds) {
+        List<Transaction> stored = new ArrayList<>(transactions.size());
+        for (Transaction tx : transactions) {
+            if (tx.getEventId() == null || storedEventIds.remove(tx.getEventId())) {
+                stored.add(tx);
+            }
+        }
+        return stored;
+    }
+
+    private void invalidateSnapshotsForLateRows(List<Transaction> transactions) {
+        LocalDateTime lateBefore = LocalDateTime.now().minusSeconds(lateAfterSeconds);
+        Map<Long, LocalDateTime> earliestLate = new TreeMap<>();
+        for (Transaction tx : transactions) {
+            if (tx.getTimestamp().isBefore(lateBefore)) {
+                earliestLate.merge(tx.getAccountId(), tx.getTimestamp(), (a, b) -> a.isBefore(b) ? a : b);
+            }
+        }
+        earliestLate.forEach((accountId, timestamp) ->
+                jdbcTemplate.update(INVALIDATE_SNAPSHOTS_SQL, accountId, Timestamp.valueOf(timestamp)));
+    }
+
+    @FunctionalInterface
+    private interface StatementCallback {
+        void run(PreparedStatement ps) throws SQLException;
+    }
+}
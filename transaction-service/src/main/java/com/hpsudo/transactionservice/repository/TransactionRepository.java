@@ -1,10 +1,74 @@
 package com.hpsudo.transactionservice.repository;
 
+import com.hpsudo.transactionservice.model.BalanceStep;
+import com.hpsudo.transactionservice.model.BalanceTail;
 import com.hpsudo.transactionservice.model.Transaction;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+
+    // A transaction's effect on the balance; types that do not move money count as 0.
+    String SIGNED_AMOUNT = """
+            case when t.type in ('DEPOSIT', 'TRANSFER_IN', 'OPENING_BALANCE') then t.amountMinor
+                 when t.type in ('WITHDRAW', 'TRANSFER_OUT') then -t.amountMinor
+                 else 0 end
+            """;
+
+    // Transactions strictly after position (fromTimestamp, fromId), in (timestamp, id) order. The plain range
+    // predicate is redundant but, unlike the OR, lets a partitioned table skip partitions before fromTimestamp.
+    String AFTER_POSITION = """
+            t.accountId = :accountId
+            and t.timestamp >= :fromTimestamp
+            and (t.timestamp > :fromTimestamp or (t.timestamp = :fromTimestamp and t.id > :fromId))
+            """;
+
     List<Transaction> findByAccountIdOrderByTimestampDesc(Long accountId);
+
+    // Keyset pagination on (timestamp, id), backed by idx_transaction_account_timestamp_id. The history pages and the
+    // NDJSON stream both read through this and findPageAfter.
+    List<Transaction> findByAccountIdOrderByTimestampDescIdDesc(Long accountId, Limit limit);
+
+    @Query("""
+            select t from Transaction t
+            where t.accountId = :accountId
+              and t.timestamp <= :timestamp
+              and (t.timestamp < :timestamp or (t.timestamp = :timestamp and t.id < :id))
+            order by t.timestamp desc, t.id desc
+            """)
+    List<Transaction> findPageAfter(@Param("accountId") Long accountId,
+                                    @Param("timestamp") LocalDateTime timestamp,
+                                    @Param("id") Long id,
+                                    Limit limit);
+
+    Optional<Transaction> findFirstByAccountIdAndTimestampLessThanOrderByTimestampDescIdDesc(Long accountId,
+                                                                                            LocalDateTime before);
+
+    /**
+     * The next transactions after a snapshot position, up to {@code until}, oldest first; used to roll snapshots forward.
+     */
+    @Query("select new com.hpsudo.transactionservice.model.BalanceStep(t.id, t.timestamp, " + SIGNED_AMOUNT + ")"
+            + " from Transaction t where " + AFTER_POSITION + " and t.timestamp <= :until"
+            + " order by t.timestamp, t.id")
+    List<BalanceStep> findStepsAfter(@Param("accountId") Long accountId,
+                                     @Param("fromTimestamp") LocalDateTime fromTimestamp,
+                                     @Param("fromId") Long fromId,
+                                     @Param("until") LocalDateTime until,
+                                     Limit limit);
+
+    /**
+     * Count and summed effect of the transactions after a snapshot position, up to and including {@code until}.
+     */
+    @Query("select new com.hpsudo.transactionservice.model.BalanceTail(count(t), coalesce(sum(" + SIGNED_AMOUNT + "), 0))"
+            + " from Transaction t where " + AFTER_POSITION + " and t.timestamp <= :until")
+    BalanceTail sumAfter(@Param("accountId") Long accountId,
+                         @Param("fromTimestamp") LocalDateTime fromTimestamp,
+                         @Param("fromId") Long fromId,
+                         @Param("until") LocalDateTime until);
 }
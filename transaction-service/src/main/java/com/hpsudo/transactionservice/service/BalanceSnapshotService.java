@@ -0,0 +1,184 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.common.money.Money;
+import com.hpsudo.transactionservice.dto.BalanceResponse;
+import com.hpsudo.transactionservice.model.BalanceSnapshot;
+import com.hpsudo.transactionservice.model.BalanceStep;
+import com.hpsudo.transactionservice.model.BalanceTail;
+import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.repository.BalanceSnapshotRepository;
+import com.hpsudo.transactionservice.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keeps a running balance per account in {@link BalanceSnapshot} rows, one every
+ * {@code transaction.balance.snapshot.every} transactions, so a point-in-time balance is the nearest snapshot plus a
+ * short tail instead of a sum over the whole history.
+ * <p>
+ * Each write marks its accounts in {@code balance_snapshot_dirty} in the same transaction, and a scheduled job rolls
+ * their snapshots forward, so marks survive a restart. Only rows older than
+ * {@code transaction.balance.snapshot.settle-seconds} are snapshotted, since events for an account can still arrive
+ * slightly out of timestamp order; a row that arrives later than that invalidates the snapshots after it (see
+ * {@code TransactionBatchRepository}) and they are rebuilt on the next run.
+ */
+@Slf4j
+@Service
+public class BalanceSnapshotService {
+
+    // Position before any transaction, used when an account has no snapshot yet
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(1, 1, 1, 0, 0);
+
+    private final TransactionRepository transactionRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<TransactionPartitionManager> partitionManager;
+    private final int every;
+    private final Duration settle;
+
+    public BalanceSnapshotService(TransactionRepository transactionRepository,
+                                  BalanceSnapshotRepository snapshotRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  ObjectProvider<TransactionPartitionManager> partitionManager,
+                                  @Value("${transaction.balance.snapshot.every:1000}") int every,
+                                  @Value("${transaction.balance.snapshot.settle-seconds:300}") long settleSeconds) {
+        if (every < 1) {
+            throw new IllegalArgumentException("transaction.balance.snapshot.every must be positive");
+        }
+        this.transactionRepository = transactionRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.partitionManager = partitionManager;
+        this.every = every;
+        this.settle = Duration.ofSeconds(settleSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.balance.snapshot.interval-ms:60000}")
+    public void snapshotDirtyAccounts() {
+        List<Long> accounts = snapshotRepository.findDirtyAccountIds();
+
+        int written = 0;
+        for (Long accountId : accounts) {
+            try {
+                written += transactionTemplate.execute(status -> rollForward(accountId));
+            } catch (RuntimeException e) {
+                // The mark was rolled back with the rest, so the account is retried on the next run
+                log.warn("Balance snapshot for account {} failed: {}", accountId, e.getMessage());
+            }
+        }
+        if (written > 0) {
+            log.info("Wrote {} balance snapshots for {} accounts", written, accounts.size());
+        }
+    }
+
+    /**
+     * Appends a snapshot for every full run of {@code every} settled transactions after the account's latest
+     * snapshot. Each step reads one bounded page, so a large backlog never loads more than {@code every} rows.
+     */
+    int rollForward(Long accountId) {
+        snapshotRepository.lockAccount(accountId);
+        snapshotRepository.clearDirty(accountId);
+        LocalDateTime cutoff = LocalDateTime.now().minus(settle);
+
+        BalanceSnapshot latest = snapshotRepository.findFirstByAccountIdOrderBySnapshotAtDescLastTransactionIdDesc(accountId)
+                .orElse(null);
+        LocalDateTime fromTimestamp = latest == null ? ORIGIN : latest.getSnapshotAt();
+        long fromId = latest == null ? 0 : latest.getLastTransactionId();
+        long balance = latest == null ? 0 : latest.getBalanceMinor();
+
+        int written = 0;
+        while (true) {
+            List<BalanceStep> steps = transactionRepository.findStepsAfter(
+                    accountId, fromTimestamp, fromId, cutoff, Limit.of(every));
+            if (steps.size() < every) {
+                return written;
+            }
+            for (BalanceStep step : steps) {
+                balance = Math.addExact(balance, step.deltaMinor());
+            }
+            BalanceStep last = steps.get(steps.size() - 1);
+            snapshotRepository.save(BalanceSnapshot.builder()
+                    .accountId(accountId)
+                    .snapshotAt(last.timestamp())
+                    .lastTransactionId(last.id())
+                    .balanceMinor(balance)
+                    .build());
+            fromTimestamp = last.timestamp();
+            fromId = last.id();
+            written++;
+        }
+    }
+
+    /**
+     * Writes a snapshot at the account's last transaction before {@code before}, however few transactions it adds,
+     * so the rows before that point can be archived without changing any balance.
+     */
+    @Transactional
+    public void snapshotBefore(Long accountId, LocalDateTime before) {
+        snapshotRepository.lockAccount(accountId);
+        Transaction last = transactionRepository
+                .findFirstByAccountIdAndTimestampLessThanOrderByTimestampDescIdDesc(accountId, before)
+                .orElse(null);
+        if (last == null) {
+            return;
+        }
+        BalanceSnapshot latest = snapshotRepository
+                .findFirstByAccountIdAndSnapshotAtLessThanEqualOrderBySnapshotAtDescLastTransactionIdDesc(accountId,
+                        last.getTimestamp())
+                .orElse(null);
+        LocalDateTime fromTimestamp = latest == null ? ORIGIN : latest.getSnapshotAt();
+        long fromId = latest == null ? 0 : latest.getLastTransactionId();
+        long base = latest == null ? 0 : latest.getBalanceMinor();
+
+        BalanceTail tail = transactionRepository.sumAfter(accountId, fromTimestamp, fromId, last.getTimestamp());
+        if (tail.transactions() == 0) {
+            return;
+        }
+        snapshotRepository.save(BalanceSnapshot.builder()
+                .accountId(accountId)
+                .snapshotAt(last.getTimestamp())
+                .lastTransactionId(last.getId())
+                .balanceMinor(Math.addExact(base, tail.deltaMinor()))
+                .build());
+    }
+
+    /**
+     * The balance right after the account's last transaction at or before {@code at}. Times before the first
+     * retained partition are rejected: the rows between the last snapshot and {@code at} may have been archived.
+     */
+    @Transactional(readOnly = true)
+    public BalanceResponse balanceAt(Long accountId, LocalDateTime at) {
+        TransactionPartitionManager partitions = partitionManager.getIfAvailable();
+        LocalDate retainedFrom = partitions == null ? null : partitions.retainedFrom();
+        if (retainedFrom != null && at.isBefore(retainedFrom.atStartOfDay())) {
+            throw new IllegalArgumentException("Balances before " + retainedFrom
+                    + " are not available; the transactions before it have been archived");
+        }
+        BalanceSnapshot snapshot = snapshotRepository
+                .findFirstByAccountIdAndSnapshotAtLessThanEqualOrderBySnapshotAtDescLastTransactionIdDesc(accountId, at)
+                .orElse(null);
+        LocalDateTime fromTimestamp = snapshot == null ? ORIGIN : snapshot.getSnapshotAt();
+        long fromId = snapshot == null ? 0 : snapshot.getLastTransactionId();
+        long base = snapshot == null ? 0 : snapshot.getBalanceMinor();
+
+        BalanceTail tail = transactionRepository.sumAfter(accountId, fromTimestamp, fromId, at);
+        return new BalanceResponse(
+                accountId,
+                at,
+                Money.toDecimal(Math.addExact(base, tail.deltaMinor())),
+                snapshot == null ? null : snapshot.getSnapshotAt(),
+                tail.transactions()
+        );
+    }
+}
@@ -0,0 +1,132 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.transactionservice.dto.RollupRebuildResponse;
+import com.hpsudo.transactionservice.exception.RollupRebuildInProgressException;
+import com.hpsudo.transactionservice.repository.RollupBatchRepository;
+import com.hpsudo.transactionservice.repository.TransactionBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recomputes the daily rollups from the raw transaction history, e.g. after a bug fix or a restore.
+ * <p>
+ * Accounts are split into chunks of {@code transaction.rollup.rebuild.chunk-size}, and up to
+ * {@code transaction.rollup.rebuild.parallelism} chunks run at once, each in its own transaction: lock the chunk's
+ * accounts, delete their rollups and insert the regrouped totals. The consumer takes the same account locks, so it can
+ * keep running; a chunk that fails leaves its accounts' previous rollups in place. Months whose partitions were
+ * archived are no longer in the raw history, so their rollups are kept as they are.
+ * <p>
+ * One rebuild runs at a time across all instances: it holds a session-level advisory lock on its own connection, and
+ * a rebuild requested meanwhile fails with {@link RollupRebuildInProgressException}.
+ */
+@Slf4j
+@Service
+public class RollupRebuildService {
+
+    private static final LocalDate ORIGIN = LocalDate.of(1, 1, 1);
+
+    // Arbitrary advisory lock key held by the running rebuild
+    private static final long REBUILD_LOCK = 0x726f6c6c7570L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionBatchRepository batchRepository;
+    private final RollupBatchRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<TransactionPartitionManager> partitionManager;
+    private final int chunkSize;
+    private final int parallelism;
+
+    public RollupRebuildService(JdbcTemplate jdbcTemplate,
+                                TransactionBatchRepository batchRepository,
+                                RollupBatchRepository rollupRepository,
+                                TransactionTemplate transactionTemplate,
+                                ObjectProvider<TransactionPartitionManager> partitionManager,
+                                @Value("${transaction.rollup.rebuild.chunk-size:500}") int chunkSize,
+                                @Value("${transaction.rollup.rebuild.parallelism:4}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchRepository = batchRepository;
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.partitionManager = partitionManager;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    public RollupRebuildResponse rebuild() {
+        return jdbcTemplate.execute((ConnectionCallback<RollupRebuildResponse>) connection -> {
+            if (!advisoryLock(connection, "pg_try_advisory_lock")) {
+                throw new RollupRebuildInProgressException("A rollup rebuild is already running");
+            }
+            try {
+                return rebuildAll();
+            } finally {
+                advisoryLock(connection, "pg_advisory_unlock");
+            }
+        });
+    }
+
+    private RollupRebuildResponse rebuildAll() {
+        long start = System.nanoTime();
+        TransactionPartitionManager partitions = partitionManager.getIfAvailable();
+        LocalDate retainedFrom = partitions == null ? null : partitions.retainedFrom();
+        LocalDate fromDay = retainedFrom == null ? ORIGIN : retainedFrom;
+        List<Long> accountIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT account_id FROM transaction ORDER BY account_id", Long.class);
+
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < accountIds.size(); from += chunkSize) {
+            chunks.add(accountIds.subList(from, Math.min(from + chunkSize, accountIds.size())));
+        }
+
+        AtomicLong rows = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            CompletableFuture<?>[] runs = chunks.stream()
+                    .map(chunk -> CompletableFuture.runAsync(() -> rows.addAndGet(transactionTemplate.execute(status -> {
+                        batchRepository.lockAccounts(chunk);
+                        return rollupRepository.rebuild(chunk, fromDay);
+                    })), executor))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(runs).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Rebuilt {} daily rollups for {} accounts in {} chunks ({} ms)",
+                rows.get(), accountIds.size(), chunks.size(), durationMs);
+        return new RollupRebuildResponse(accountIds.size(), chunks.size(), rows.get(), durationMs);
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, REBUILD_LOCK);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.common.money.Money;
+import com.hpsudo.transactionservice.dto.DailyStatement;
+import com.hpsudo.transactionservice.dto.MonthlyStatement;
+import com.hpsudo.transactionservice.model.DailyRollup;
+import com.hpsudo.transactionservice.repository.DailyRollupRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Statements built from {@link DailyRollup} rows only; a month is the sum of its days.
+ */
+@Service
+@RequiredArgsConstructor
+public class StatementService {
+
+    private static final int MAX_DAYS = 366;
+
+    private final DailyRollupRepository rollupRepository;
+
+    public List<DailyStatement> daily(Long accountId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        // Both ends are included, so 'to' may be at most MAX_DAYS - 1 days after 'from'
+        if (!to.isBefore(from.plusDays(MAX_DAYS))) {
+            throw new IllegalArgumentException("Daily statements cover at most " + MAX_DAYS + " days");
+        }
+        return rollupRepository.findByAccountIdAndDayBetweenOrderByDay(accountId, from, to).stream()
+                .map(StatementService::toDaily)
+                .toList();
+    }
+
+    public MonthlyStatement monthly(Long accountId, YearMonth month) {
+        List<DailyRollup> days = rollupRepository.findByAccountIdAndDayBetweenOrderByDay(
+                accountId, month.atDay(1), month.atEndOfMonth());
+
+        DailyRollup total = new DailyRollup(accountId, month.atDay(1));
+        days.forEach(total::merge);
+
+        boolean empty = total.getTransactionCount() == 0;
+        return new MonthlyStatement(
+                accountId,
+                month,
+                Money.toDecimal(total.getCreditsMinor()),
+                Money.toDecimal(total.getDebitsMinor()),
+                Money.toDecimal(total.getCreditsMinor() - total.getDebitsMinor()),
+                total.getTransactionCount(),
+                empty ? null : Money.toDecimal(total.getMinAmountMinor()),
+                empty ? null : Money.toDecimal(total.getMaxAmountMinor()),
+                days.stream().map(StatementService::toDaily).toList()
+        );
+    }
+
+    private static DailyStatement toDaily(DailyRollup day) {
+        return new DailyStatement(
+                day.getDay(),
+                Money.toDecimal(day.getCreditsMinor()),
+                Money.toDecimal(day.getDebitsMinor()),
+                Money.toDecimal(day.getCreditsMinor() - day.getDebitsMinor()),
+                day.getTransactionCount(),
+                Money.toDecimal(day.getMinAmountMinor()),
+                Money.toDecimal(day.getMaxAmountMinor())
+        );
+    }
+}
@@ -0,0 +1,303 @@
+package com.hpsudo.transactionservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the {@code transaction} table range-partitioned by month on {@code timestamp}, so inserts only maintain the
+ * indexes of the current month and old months can be removed without a bulk DELETE.
+ * <p>
+ * On the first start with {@code transaction.partitioning.enabled} an existing plain table is converted in one
+ * transaction: it is renamed to {@code transaction_legacy} and attached, unchanged, as the partition for everything up
+ * to the end of the current month. Attaching validates the rows and indexes them for the new unique keys, so run the
+ * first start in a quiet period. After that a daily job creates the monthly partitions
+ * {@code transaction.partitioning.months-ahead} months ahead, and archives partitions that ended more than
+ * {@code transaction.partitioning.retention-months} ago: the balances of their accounts are snapshotted at the
+ * partition end, the rows are written with {@code COPY} to {@code <name>.csv.gz} in
+ * {@code transaction.partitioning.archive.dir}, and the partition is detached with {@code DETACH ... CONCURRENTLY}
+ * (and dropped with {@code archive.drop-detached}), so inserts into other months are not blocked. The job runs on a
+ * thread of its own, not the shared scheduler thread. Daily rollups of archived months are kept, so their statements
+ * still work.
+ * <p>
+ * The table has no DEFAULT partition, because concurrent detaching is not allowed with one. Instead
+ * {@link #accepts} tells the consumer which timestamps the attached partitions cover, and rows outside that range
+ * (archived months, or beyond {@code months-ahead}) are parked in {@code transaction_overflow} rather than failing
+ * their batch.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "transaction.partitioning.enabled", havingValue = "true")
+public class TransactionPartitionManager implements SmartInitializingSingleton {
+
+    // Arbitrary advisory lock key, so only one instance converts the table
+    private static final long CONVERSION_LOCK = 0x7472616E73L;
+
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'transaction_y'yyyy'm'MM");
+
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), i.inhdetachpending
+            FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'transaction'::regclass
+            """;
+
+    // How long a cached partition range is trusted, so detaches by other instances are picked up
+    private static final Duration RANGE_TTL = Duration.ofMinutes(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BalanceSnapshotService snapshotService;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDir;
+    private final boolean dropDetached;
+    private final ExecutorService maintenanceExecutor =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "partition-maintenance"));
+    private final AtomicBoolean maintaining = new AtomicBoolean();
+    private volatile Range range;
+
+    public TransactionPartitionManager(JdbcTemplate jdbcTemplate,
+                                       TransactionTemplate transactionTemplate,
+                                       BalanceSnapshotService snapshotService,
+                                       @Value("${transaction.partitioning.months-ahead:3}") int monthsAhead,
+                                       @Value("${transaction.partitioning.retention-months:24}") int retentionMonths,
+                                       @Value("${transaction.partitioning.archive.dir:archive}") Path archiveDir,
+                                       @Value("${transaction.partitioning.archive.drop-detached:false}") boolean dropDetached) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.snapshotService = snapshotService;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveDir = archiveDir;
+        this.dropDetached = dropDetached;
+    }
+
+    /**
+     * Runs after the schema exists and before the Kafka listeners start.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        transactionTemplate.executeWithoutResult(status -> convertIfPlain());
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS transaction_overflow (LIKE transaction INCLUDING ALL)");
+        createAhead();
+        refreshRange();
+    }
+
+    /**
+     * Starts the daily maintenance on its own thread, unless the previous run is still going.
+     */
+    @Scheduled(cron = "${transaction.partitioning.maintenance-cron:0 30 2 * * *}")
+    public void maintain() {
+        if (!maintaining.compareAndSet(false, true)) {
+            log.warn("Partition maintenance is still running, skipping this run");
+            return;
+        }
+        maintenanceExecutor.execute(() -> {
+            try {
+                runMaintenance();
+            } catch (RuntimeException e) {
+                log.error("Partition maintenance failed", e);
+            } finally {
+                maintaining.set(false);
+            }
+        });
+    }
+
+    void runMaintenance() {
+        createAhead();
+        archiveCold();
+        refreshRange();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        maintenanceExecutor.shutdownNow();
+    }
+
+    /**
+     * Whether an attached partition covers {@code timestamp}; rows it does not are stored in
+     * {@code transaction_overflow}.
+     */
+    public boolean accepts(LocalDateTime timestamp) {
+        Range current = range;
+        if (current == null || current.loadedAt().plus(RANGE_TTL).isBefore(LocalDateTime.now())) {
+            current = refreshRange();
+        }
+        return (current.from() == null || !timestamp.isBefore(current.from()))
+                && (current.to() == null || timestamp.isBefore(current.to()));
+    }
+
+    /**
+     * The first day still held in the table, or {@code null} if nothing has been archived.
+     */
+    public LocalDate retainedFrom() {
+        List<Partition> partitions = attached();
+        if (partitions.isEmpty() || partitions.stream().anyMatch(partition -> partition.from() == null)) {
+            return null;
+        }
+        return partitions.stream().map(Partition::from).min(Comparator.naturalOrder()).orElseThrow().toLocalDate();
+    }
+
+    // Partitions are created after the latest one and archived from the earliest, so they stay contiguous
+    private Range refreshRange() {
+        List<Partition> partitions = attached();
+        Range refreshed = new Range(
+                partitions.stream().anyMatch(partition -> partition.from() == null) ? null
+                        : partitions.stream().map(Partition::from).min(Comparator.naturalOrder()).orElse(null),
+                partitions.stream().map(Partition::to).max(Comparator.naturalOrder()).orElse(null),
+                LocalDateTime.now());
+        range = refreshed;
+        return refreshed;
+    }
+
+    private void convertIfPlain() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", CONVERSION_LOCK);
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('transaction')", String.class);
+        if (!"r".equals(kind)) {
+            return;
+        }
+
+        LocalDateTime bound = YearMonth.now().plusMonths(1).atDay(1).atStartOfDay();
+        log.info("Converting table transaction to monthly partitions; existing rows stay in transaction_legacy");
+        jdbcTemplate.execute("ALTER TABLE transaction RENAME TO transaction_legacy");
+        // Frees the index and constraint names for the partitioned table
+        for (String index : jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid"
+                        + " WHERE i.indrelid = 'transaction_legacy'::regclass", String.class)) {
+            jdbcTemplate.execute("ALTER INDEX \"" + index + "\" RENAME TO \"" + index + "_legacy\"");
+        }
+        jdbcTemplate.execute("ALTER TABLE transaction_legacy ALTER COLUMN \"timestamp\" SET NOT NULL");
+        jdbcTemplate.execute("""
+                CREATE TABLE transaction (LIKE transaction_legacy INCLUDING DEFAULTS)
+                PARTITION BY RANGE ("timestamp")
+                """);
+        jdbcTemplate.execute("ALTER TABLE transaction ADD CONSTRAINT transaction_pkey PRIMARY KEY (id, \"timestamp\")");
+        jdbcTemplate.execute("ALTER TABLE transaction ADD CONSTRAINT uk_transaction_event_id_timestamp"
+                + " UNIQUE (event_id, \"timestamp\")");
+        jdbcTemplate.execute("CREATE INDEX idx_transaction_account_timestamp_id"
+                + " ON transaction (account_id, \"timestamp\" DESC, id DESC)");
+        jdbcTemplate.execute("ALTER TABLE transaction ATTACH PARTITION transaction_legacy"
+                + " FOR VALUES FROM (MINVALUE) TO ('" + BOUND_FORMAT.format(bound) + "')");
+    }
+
+    private void createAhead() {
+        LocalDateTime until = YearMonth.now().plusMonths(monthsAhead + 1L).atDay(1).atStartOfDay();
+        LocalDateTime from = attached().stream()
+                .map(Partition::to)
+                .max(Comparator.naturalOrder())
+                .orElse(YearMonth.now().atDay(1).atStartOfDay());
+        for (; from.isBefore(until); from = from.plusMonths(1)) {
+            String name = NAME_FORMAT.format(from);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF transaction FOR VALUES FROM ('"
+                    + BOUND_FORMAT.format(from) + "') TO ('" + BOUND_FORMAT.format(from.plusMonths(1)) + "')");
+            log.info("Created partition {}", name);
+        }
+    }
+
+    private void archiveCold() {
+        LocalDateTime cutoff = YearMonth.now().minusMonths(retentionMonths).atDay(1).atStartOfDay();
+        // Includes partitions whose concurrent detach was interrupted, so it gets finished
+        List<Partition> cold = partitions().stream()
+                .filter(partition -> !partition.to().isAfter(cutoff))
+                .sorted(Comparator.comparing(Partition::to))
+                .toList();
+        for (Partition partition : cold) {
+            try {
+                archive(partition);
+            } catch (RuntimeException e) {
+                // Left attached; the next run tries again
+                log.error("Archiving partition {} failed", partition.name(), e);
+                return;
+            }
+        }
+    }
+
+    private void archive(Partition partition) {
+        List<Long> accountIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT account_id FROM " + partition.name(), Long.class);
+        accountIds.forEach(accountId -> snapshotService.snapshotBefore(accountId, partition.to()));
+
+        Path file = archiveDir.resolve(partition.name() + ".csv.gz");
+        Path partial = archiveDir.resolve(partition.name() + ".csv.gz.part");
+        long rows = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try {
+                Files.createDirectories(archiveDir);
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial))) {
+                    return con.unwrap(PGConnection.class).getCopyAPI()
+                            .copyOut("COPY " + partition.name() + " TO STDOUT WITH (FORMAT csv, HEADER)", out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try {
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Outside a transaction: waits for queries using the partition instead of blocking new ones
+        jdbcTemplate.execute("ALTER TABLE transaction DETACH PARTITION " + partition.name()
+                + (partition.detachPending() ? " FINALIZE" : " CONCURRENTLY"));
+        if (dropDetached) {
+            jdbcTemplate.execute("DROP TABLE " + partition.name());
+        }
+        log.info("Archived partition {} ({} rows, {} accounts) to {}", partition.name(), rows, accountIds.size(), file);
+    }
+
+    private List<Partition> partitions() {
+        return jdbcTemplate.query(PARTITIONS_SQL, (rs, rowNum) -> {
+            Matcher bounds = BOUNDS.matcher(rs.getString(2));
+            if (!bounds.find()) {
+                throw new IllegalStateException("Unexpected bound on partition " + rs.getString(1) + ": " + rs.getString(2));
+            }
+            return new Partition(rs.getString(1), parseBound(bounds.group(1)), parseBound(bounds.group(2)),
+                    rs.getBoolean(3));
+        });
+    }
+
+    private List<Partition> attached() {
+        return partitions().stream().filter(partition -> !partition.detachPending()).toList();
+    }
+
+    // null stands for MINVALUE
+    private static LocalDateTime parseBound(String bound) {
+        return "MINVALUE".equals(bound) ? null : LocalDateTime.parse(bound.replace("'", ""), BOUND_FORMAT);
+    }
+
+    private record Partition(String name, LocalDateTime from, LocalDateTime to, boolean detachPending) {}
+
+    // null bounds are unbounded; both null while no partition exists
+    private record Range(LocalDateTime from, LocalDateTime to, LocalDateTime loadedAt) {}
+}
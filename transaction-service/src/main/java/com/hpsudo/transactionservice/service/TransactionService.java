@@ -1,33 +1,72 @@
 package com.hpsudo.transactionservice.service;
 
+import com.hpsudo.common.money.Money;
+import com.hpsudo.transactionservice.dto.TransactionCursor;
+import com.hpsudo.transactionservice.dto.TransactionPage;
 import com.hpsudo.transactionservice.dto.TransactionRequest;
 import com.hpsudo.transactionservice.dto.TransactionResponse;
 import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.repository.RollupBatchRepository;
+import com.hpsudo.transactionservice.repository.TransactionBatchRepository;
 import com.hpsudo.transactionservice.repository.TransactionRepository;
-import lombok.RequiredArgsConstructor;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
-@RequiredArgsConstructor
 public class TransactionService {
 
     private final TransactionRepository repository;
+    private final TransactionBatchRepository batchRepository;
+    private final RollupBatchRepository rollupRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxPageSize;
+    private final int streamPageSize;
 
+    public TransactionService(TransactionRepository repository,
+                              TransactionBatchRepository batchRepository,
+                              RollupBatchRepository rollupRepository,
+                              EntityManager entityManager,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${transaction.history.max-page-size:500}") int maxPageSize,
+                              @Value("${transaction.history.stream-page-size:500}") int streamPageSize) {
+        this.repository = repository;
+        this.batchRepository = batchRepository;
+        this.rollupRepository = rollupRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxPageSize = maxPageSize;
+        this.streamPageSize = streamPageSize;
+    }
+
+    @Transactional
     public TransactionResponse log(TransactionRequest request) {
         Transaction transaction = Transaction.builder()
                 .accountId(request.accountId())
                 .type(request.type())
-                .amount(request.amount())
+                .amountMinor(Money.toMinorUnits(request.amount()))
                 .description(request.description())
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        return toResponse(repository.save(transaction));
+        batchRepository.lockAccounts(List.of(request.accountId()));
+        Transaction saved = repository.save(transaction);
+        rollupRepository.add(List.of(saved));
+        batchRepository.markSnapshotsDirty(List.of(request.accountId()));
+        return toResponse(saved);
     }
 
+    @Transactional(readOnly = true)
     public List<TransactionResponse> getByAccount(Long accountId) {
         return repository.findByAccountIdOrderByTimestampDesc(accountId)
                 .stream()
@@ -35,14 +74,71 @@ public class TransactionService {
                 .toList();
     }
 
+    @Transactional(readOnly = true)
+    public TransactionPage getPageByAccount(Long accountId, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        int pageSize = Math.min(size, maxPageSize);
+        // One extra row tells us whether there is a next page without a count query.
+        Limit limit = Limit.of(pageSize + 1);
+
+        TransactionCursor after = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+        List<Transaction> rows = findPage(accountId, after, limit);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Transaction> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Transaction last = page.get(page.size() - 1);
+            nextCursor = new TransactionCursor(last.getTimestamp(), last.getId()).encode();
+        }
+
+        return new TransactionPage(page.stream().map(this::toResponse).toList(), nextCursor);
+    }
+
+    /**
+     * Hands every transaction of the account, newest first, to {@code sink}. Rows are read in keyset pages of
+     * {@code transaction.history.stream-page-size}, each in its own short read-only transaction, so a slow client
+     * holds neither a connection nor a snapshot while it reads.
+     */
+    public void streamByAccount(Long accountId, Consumer<TransactionResponse> sink) {
+        Limit limit = Limit.of(streamPageSize);
+        TransactionCursor after = null;
+        while (true) {
+            TransactionCursor position = after;
+            List<TransactionResponse> page = readOnlyTransaction.execute(status -> {
+                List<Transaction> rows = findPage(accountId, position, limit);
+                List<TransactionResponse> responses = rows.stream().map(this::toResponse).toList();
+                rows.forEach(entityManager::detach);
+                return responses;
+            });
+            page.forEach(sink);
+            if (page.size() < streamPageSize) {
+                return;
+            }
+            TransactionResponse last = page.get(page.size() - 1);
+            after = new TransactionCursor(last.timestamp(), last.id());
+        }
+    }
+
+    // Newest first, strictly after the cursor when there is one
+    private List<Transaction> findPage(Long accountId, TransactionCursor after, Limit limit) {
+        return after == null
+                ? repository.findByAccountIdOrderByTimestampDescIdDesc(accountId, limit)
+                : repository.findPageAfter(accountId, after.timestamp(), after.id(), limit);
+    }
+
     private TransactionResponse toResponse(Transaction tx) {
         return new TransactionResponse(
                 tx.getId(),
                 tx.getAccountId(),
                 tx.getType(),
-                tx.getAmount(),
+                Money.toDecimal(tx.getAmountMinor()),
                 tx.getDescription(),
-                tx.getTimestamp()
+                tx.getTimestamp(),
+                tx.getTransferId(),
+                tx.getCounterpartyAccountId()
         );
     }
 }
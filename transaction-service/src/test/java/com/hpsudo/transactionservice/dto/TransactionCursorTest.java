@@ -0,0 +1,54 @@
+package com.hpsudo.transactionservice.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionCursorTest {
+
+    @Test
+    void decodeReturnsTheEncodedPosition() {
+        TransactionCursor cursor = new TransactionCursor(LocalDateTime.of(2025, 3, 1, 12, 0, 5, 123_456_000), 42L);
+
+        assertEquals(cursor, TransactionCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void timestampOnAWholeMinuteSurvivesTheRoundTrip() {
+        // LocalDateTime.toString drops zero seconds, so the encoded form is shorter than usual
+        TransactionCursor cursor = new TransactionCursor(LocalDateTime.of(2025, 3, 1, 12, 0), Long.MAX_VALUE);
+
+        assertEquals(cursor, TransactionCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void encodedCursorIsSafeInAQueryString() {
+        String encoded = new TransactionCursor(LocalDateTime.of(2025, 3, 1, 12, 0, 5, 999_999_999), 1L).encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+    }
+
+    @Test
+    void malformedCursorIsRejectedAsAnInvalidArgument() {
+        assertInvalid("not base64!");
+        assertInvalid(base64("2025-03-01T12:00"));
+        assertInvalid(base64("2025-03-01T12:00|seven"));
+        assertInvalid(base64("yesterday|7"));
+    }
+
+    private static void assertInvalid(String cursor) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TransactionCursor.decode(cursor));
+        assertEquals("Invalid cursor: " + cursor, e.getMessage());
+    }
+
+    private static String base64(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package com.hpsudo.transactionservice.kafka;
+
+import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.protobuf.TransactionType;
+import com.hpsudo.transactionservice.exception.UndecodableEventException;
+import com.hpsudo.transactionservice.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.List;
+
+import static com.hpsudo.transactionservice.kafka.TransactionEventMapperTest.record;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class KafkaTransactionBatchConsumerTest {
+
+    private KeyOrderedTransactionWriter writer;
+    private KafkaTransactionBatchConsumer consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        writer = mock(KeyOrderedTransactionWriter.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        consumer = new KafkaTransactionBatchConsumer(writer, new TransactionEventMapper(), meterRegistry,
+                new EventLatencyTracker(meterRegistry, mock(ObjectProvider.class)), 0);
+    }
+
+    @Test
+    void undecodableRecordFailsTheBatchAfterStoringTheRecordsBeforeIt() {
+        ConsumerRecord<String, byte[]> unknownType = record(event("event-2").toBuilder()
+                .setTransactionTypeValue(99).build().toByteArray());
+        List<ConsumerRecord<String, byte[]>> records = List.of(
+                record(event("event-1").toByteArray()), unknownType, record(event("event-3").toByteArray()));
+
+        BatchListenerFailedException failed = assertThrows(BatchListenerFailedException.class,
+                () -> consumer.consume(records));
+
+        // The error handler dead-letters this record and redelivers the ones after it
+        assertSame(unknownType, failed.getRecord());
+        assertInstanceOf(UndecodableEventException.class, failed.getCause());
+        ArgumentCaptor<List<Transaction>> stored = captor();
+        verify(writer).write(stored.capture());
+        assertEquals(List.of("event-1"), stored.getValue().stream().map(Transaction::getEventId).toList());
+    }
+
+    @Test
+    void decodableBatchIsStoredInOneWrite() {
+        consumer.consume(List.of(record(event("event-1").toByteArray()), record(event("event-2").toByteArray())));
+
+        ArgumentCaptor<List<Transaction>> stored = captor();
+        verify(writer).write(stored.capture());
+        assertEquals(List.of("event-1", "event-2"), stored.getValue().stream().map(Transaction::getEventId).toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Transaction>> captor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private static TransactionEvent event(String eventId) {
+        return TransactionEvent.newBuilder()
+                .setEventId(eventId)
+                .setAccountId(7)
+                .setTransactionType(TransactionType.DEPOSIT)
+                .setAmountMinor(100)
+                .setTimestampMicros(System.currentTimeMillis() * 1_000)
+                .build();
+    }
+}
@@ -0,0 +1,133 @@
+package com.hpsudo.transactionservice.kafka;
+
+import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.repository.TransactionBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class KeyOrderedTransactionWriterTest {
+
+    private static final int WORKERS = 4;
+
+    private final TransactionBatchRepository batchRepository = mock(TransactionBatchRepository.class);
+    private KeyOrderedTransactionWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    void eachAccountIsInsertedInOneLaneInItsOriginalOrder() {
+        List<List<Transaction>> inserts = recordInserts();
+        writer = new KeyOrderedTransactionWriter(batchRepository, true, WORKERS, false);
+        List<Transaction> batch = interleaved(10, 5);
+
+        writer.write(batch);
+
+        assertKeyOrdered(batch, inserts);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualThreadLanesKeepTheOrderToo() {
+        List<List<Transaction>> inserts = recordInserts();
+        writer = new KeyOrderedTransactionWriter(batchRepository, true, WORKERS, true);
+        List<Transaction> batch = interleaved(10, 5);
+
+        writer.write(batch);
+
+        assertKeyOrdered(batch, inserts);
+    }
+
+    @Test
+    void failedLaneIsRethrownAndTheRedeliveredBatchIsStoredOnce() {
+        // Stands in for ON CONFLICT (event_id, timestamp) DO NOTHING
+        Map<String, Transaction> stored = new ConcurrentHashMap<>();
+        QueryTimeoutException timeout = new QueryTimeoutException("lock timeout");
+        AtomicBoolean failed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            List<Transaction> lane = invocation.getArgument(0);
+            if (!ofAccount(lane, 1L).isEmpty() && failed.compareAndSet(false, true)) {
+                throw timeout;
+            }
+            lane.forEach(tx -> stored.putIfAbsent(tx.getEventId(), tx));
+            return null;
+        }).when(batchRepository).insertAll(anyList());
+        writer = new KeyOrderedTransactionWriter(batchRepository, true, WORKERS, false);
+        List<Transaction> batch = interleaved(10, 5);
+
+        QueryTimeoutException thrown = assertThrows(QueryTimeoutException.class, () -> writer.write(batch));
+        assertSame(timeout, thrown);
+        // The other lanes committed; the failed one stored nothing
+        assertEquals(List.of(), ofAccount(List.copyOf(stored.values()), 1L));
+
+        writer.write(batch);
+
+        assertEquals(batch.size(), stored.size());
+        batch.forEach(tx -> assertSame(tx, stored.get(tx.getEventId())));
+    }
+
+    @Test
+    void sequentialWriterInsertsTheBatchAsIs() {
+        List<List<Transaction>> inserts = recordInserts();
+        writer = new KeyOrderedTransactionWriter(batchRepository, false, WORKERS, false);
+        List<Transaction> batch = interleaved(10, 5);
+
+        writer.write(batch);
+
+        assertEquals(List.of(batch), inserts);
+    }
+
+    private static void assertKeyOrdered(List<Transaction> batch, List<List<Transaction>> inserts) {
+        assertEquals(batch.size(), inserts.stream().mapToInt(List::size).sum());
+        batch.stream().map(Transaction::getAccountId).distinct().forEach(accountId -> {
+            List<List<Transaction>> lanes = inserts.stream()
+                    .filter(lane -> !ofAccount(lane, accountId).isEmpty())
+                    .toList();
+            assertEquals(1, lanes.size(), "lanes of account " + accountId);
+            assertEquals(ofAccount(batch, accountId), ofAccount(lanes.get(0), accountId));
+        });
+    }
+
+    private List<List<Transaction>> recordInserts() {
+        List<List<Transaction>> inserts = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> inserts.add(List.copyOf(invocation.<List<Transaction>>getArgument(0))))
+                .when(batchRepository).insertAll(anyList());
+        return inserts;
+    }
+
+    private static List<Transaction> interleaved(int accounts, int eventsPerAccount) {
+        List<Transaction> batch = new ArrayList<>();
+        for (int event = 0; event < eventsPerAccount; event++) {
+            for (long accountId = 1; accountId <= accounts; accountId++) {
+                batch.add(Transaction.builder()
+                        .eventId("account-" + accountId + "-event-" + event)
+                        .accountId(accountId)
+                        .build());
+            }
+        }
+        return batch;
+    }
+
+    private static List<Transaction> ofAccount(List<Transaction> transactions, long accountId) {
+        return transactions.stream().filter(tx -> tx.getAccountId() == accountId).toList();
+    }
+}
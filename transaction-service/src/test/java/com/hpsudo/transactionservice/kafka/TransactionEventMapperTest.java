@@ -0,0 +1,149 @@
+package com.hpsudo.transactionservice.kafka;
+
+import com.hpsudo.protobuf.EventHeaders;
+import com.hpsudo.protobuf.TransactionEvent;
+import com.hpsudo.protobuf.TransactionEventBatch;
+import com.hpsudo.protobuf.TransactionType;
+import com.hpsudo.transactionservice.exception.UndecodableEventException;
+import com.hpsudo.transactionservice.model.Transaction;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionEventMapperTest {
+
+    private static final String ISO_TIME = "2026-03-01T10:15:30.123456+02:00";
+    private static final long MICROS = OffsetDateTime.parse(ISO_TIME).toEpochSecond() * 1_000_000 + 123_456;
+    private static final LocalDateTime LOCAL_TIME =
+            LocalDateTime.ofInstant(OffsetDateTime.parse(ISO_TIME).toInstant(), ZoneId.systemDefault());
+
+    private final TransactionEventMapper mapper = new TransactionEventMapper();
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void legacyLayoutIsReadFromTheStringTypeDoubleAmountAndIsoTimestamp() {
+        TransactionEvent v1 = TransactionEvent.newBuilder()
+                .setAccountId(7)
+                .setType("DEPOSIT")
+                .setAmount(0.29)
+                .setDescription("Deposit to account")
+                .setTimestamp(ISO_TIME)
+                .build();
+
+        Transaction transaction = single(record(v1.toByteArray()));
+
+        assertEquals(7L, transaction.getAccountId());
+        assertEquals("DEPOSIT", transaction.getType());
+        assertEquals(29, transaction.getAmountMinor());
+        assertEquals("Deposit to account", transaction.getDescription());
+        assertNull(transaction.getEventId());
+        assertNull(transaction.getTransferId());
+        assertNull(transaction.getCounterpartyAccountId());
+    }
+
+    @Test
+    void currentLayoutIsReadFromTheEnumMinorUnitsAndMicros() {
+        TransactionEvent v2 = TransactionEvent.newBuilder()
+                .setEventId("event-1")
+                .setAccountId(7)
+                .setTransactionType(TransactionType.TRANSFER_OUT)
+                .setAmountMinor(12_345)
+                .setTimestampMicros(MICROS)
+                .setTransferId("transfer-1")
+                .setCounterpartyAccountId(8)
+                .build();
+
+        Transaction transaction = single(record(v2.toByteArray()));
+
+        assertEquals("event-1", transaction.getEventId());
+        assertEquals("TRANSFER_OUT", transaction.getType());
+        assertEquals(12_345, transaction.getAmountMinor());
+        assertEquals("transfer-1", transaction.getTransferId());
+        assertEquals(8L, transaction.getCounterpartyAccountId());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void bothTimestampLayoutsAreStoredInTheSameZone() {
+        TransactionEvent v1 = TransactionEvent.newBuilder().setType("DEPOSIT").setTimestamp(ISO_TIME).build();
+        TransactionEvent v2 = TransactionEvent.newBuilder()
+                .setTransactionType(TransactionType.DEPOSIT).setTimestampMicros(MICROS).build();
+
+        assertEquals(LOCAL_TIME, single(record(v1.toByteArray())).getTimestamp());
+        assertEquals(LOCAL_TIME, single(record(v2.toByteArray())).getTimestamp());
+    }
+
+    @Test
+    void batchLayoutYieldsItsEventsInOrder() {
+        TransactionEventBatch batch = TransactionEventBatch.newBuilder()
+                .addEvents(event("event-1", TransactionType.DEPOSIT, 100))
+                .addEvents(event("event-2", TransactionType.WITHDRAW, 40))
+                .addEvents(event("event-3", TransactionType.DEPOSIT, 5))
+                .build();
+
+        List<Transaction> transactions = mapper.decode(record(batch.toByteArray(), EventHeaders.BATCH));
+
+        assertEquals(List.of("event-1", "event-2", "event-3"),
+                transactions.stream().map(Transaction::getEventId).toList());
+        assertEquals(List.of(100L, 40L, 5L), transactions.stream().map(Transaction::getAmountMinor).toList());
+        assertEquals("WITHDRAW", transactions.get(1).getType());
+    }
+
+    @Test
+    void unknownPayloadTypeCannotBeDecoded() {
+        byte[] value = event("event-1", TransactionType.DEPOSIT, 100).toByteArray();
+
+        assertThrows(UndecodableEventException.class, () -> mapper.decode(record(value, "avro")));
+    }
+
+    @Test
+    void unknownTransactionTypeCannotBeDecoded() {
+        byte[] value = event("event-1", TransactionType.DEPOSIT, 100).toBuilder()
+                .setTransactionTypeValue(99)
+                .build()
+                .toByteArray();
+
+        assertThrows(UndecodableEventException.class, () -> mapper.decode(record(value)));
+    }
+
+    @Test
+    void malformedPayloadCannotBeDecoded() {
+        assertThrows(UndecodableEventException.class, () -> mapper.decode(record(new byte[]{(byte) 0xff, 0x01})));
+    }
+
+    private Transaction single(ConsumerRecord<String, byte[]> record) {
+        List<Transaction> transactions = mapper.decode(record);
+        assertEquals(1, transactions.size());
+        return transactions.get(0);
+    }
+
+    private static TransactionEvent event(String eventId, TransactionType type, long amountMinor) {
+        return TransactionEvent.newBuilder()
+                .setEventId(eventId)
+                .setAccountId(7)
+                .setTransactionType(type)
+                .setAmountMinor(amountMinor)
+                .setTimestampMicros(Instant.now().toEpochMilli() * 1_000)
+                .build();
+    }
+
+    static ConsumerRecord<String, byte[]> record(byte[] value) {
+        return new ConsumerRecord<>("transaction-events", 0, 0, "7", value);
+    }
+
+    static ConsumerRecord<String, byte[]> record(byte[] value, String payloadType) {
+        ConsumerRecord<String, byte[]> record = record(value);
+        record.headers().add(EventHeaders.PAYLOAD_TYPE, payloadType.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
@@ -0,0 +1,114 @@
+package com.hpsudo.transactionservice.repository;
+
+import com.hpsudo.transactionservice.model.DailyRollup;
+import com.hpsudo.transactionservice.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.startsWith;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RollupBatchRepositoryTest {
+
+    private static final LocalDateTime DAY_ONE = LocalDateTime.of(2025, 1, 1, 9, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private RollupBatchRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repository = new RollupBatchRepository(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addUpsertsOneRowPerAccountAndDayInAStableOrder() {
+        repository.add(List.of(
+                transaction(2L, "DEPOSIT", 1_000, DAY_ONE),
+                transaction(1L, "WITHDRAW", 300, DAY_ONE.plusDays(1)),
+                transaction(1L, "DEPOSIT", 500, DAY_ONE),
+                transaction(1L, "TRANSFER_IN", 200, DAY_ONE.plusHours(5)),
+                transaction(1L, "TRANSFER_OUT", 50, DAY_ONE.plusHours(6))));
+
+        ArgumentCaptor<Collection<DailyRollup>> rows = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture(), eq(3),
+                any(ParameterizedPreparedStatementSetter.class));
+        List<DailyRollup> upserts = new ArrayList<>(rows.getValue());
+
+        assertEquals(List.of(new DailyRollup.Key(1L, LocalDate.of(2025, 1, 1)),
+                        new DailyRollup.Key(1L, LocalDate.of(2025, 1, 2)),
+                        new DailyRollup.Key(2L, LocalDate.of(2025, 1, 1))),
+                upserts.stream().map(row -> new DailyRollup.Key(row.getAccountId(), row.getDay())).toList());
+        DailyRollup first = upserts.get(0);
+        assertEquals(700, first.getCreditsMinor());
+        assertEquals(50, first.getDebitsMinor());
+        assertEquals(3, first.getTransactionCount());
+        assertEquals(50, first.getMinAmountMinor());
+        assertEquals(500, first.getMaxAmountMinor());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addWithNothingStoredWritesNothing() {
+        repository.add(List.of());
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuildReplacesTheAccountsRollupsFromTheGivenDay() throws Exception {
+        Connection connection = mock(Connection.class);
+        Array ids = mock(Array.class);
+        PreparedStatement delete = mock(PreparedStatement.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        when(connection.createArrayOf("bigint", new Object[]{1L, 2L})).thenReturn(ids);
+        when(connection.prepareStatement(startsWith("DELETE"))).thenReturn(delete);
+        when(connection.prepareStatement(startsWith("INSERT"))).thenReturn(insert);
+        when(insert.executeUpdate()).thenReturn(42);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<Integer>>getArgument(0).doInConnection(connection));
+        LocalDate fromDay = LocalDate.of(2024, 6, 1);
+
+        assertEquals(42, repository.rebuild(List.of(1L, 2L), fromDay));
+
+        var order = inOrder(delete, insert, ids);
+        order.verify(delete).setArray(1, ids);
+        order.verify(delete).setDate(2, Date.valueOf(fromDay));
+        order.verify(delete).executeUpdate();
+        order.verify(insert).setArray(1, ids);
+        order.verify(insert).setTimestamp(2, Timestamp.valueOf(fromDay.atStartOfDay()));
+        order.verify(insert).executeUpdate();
+        order.verify(ids).free();
+    }
+
+    private static Transaction transaction(Long accountId, String type, long amountMinor, LocalDateTime timestamp) {
+        return Transaction.builder().accountId(accountId).type(type).amountMinor(amountMinor).timestamp(timestamp).build();
+    }
+}
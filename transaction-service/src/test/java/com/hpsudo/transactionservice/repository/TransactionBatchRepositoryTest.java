@@ -0,0 +1,116 @@
+package com.hpsudo.transactionservice.repository;
+
+import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.service.TransactionPartitionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionBatchRepositoryTest {
+
+    private static final long SETTLE_SECONDS = 300;
+    private static final String INVALIDATE_SQL = "DELETE FROM balance_snapshot WHERE account_id = ? AND snapshot_at >= ?";
+
+    private JdbcTemplate jdbcTemplate;
+    private RollupBatchRepository rollupRepository;
+    private ObjectProvider<TransactionPartitionManager> partitionManager;
+    private TransactionBatchRepository repository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        rollupRepository = mock(RollupBatchRepository.class);
+        // Stands in for the lock, insert and mark statements; the insert reports every event as stored
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> new HashSet<>(Set.of("e1", "e2", "e3", "e4")));
+        partitionManager = mock(ObjectProvider.class);
+        repository = new TransactionBatchRepository(jdbcTemplate, rollupRepository, partitionManager, SETTLE_SECONDS);
+    }
+
+    @Test
+    void lateRowsInvalidateTheirAccountsSnapshotsFromTheEarliestLateRow() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime earliest = now.minusHours(2);
+        repository.insertAll(List.of(
+                transaction("e1", 1L, now.minusHours(1)),
+                transaction("e2", 1L, earliest),
+                transaction("e3", 2L, now.minusSeconds(SETTLE_SECONDS / 2 + 10)),
+                transaction("e4", 3L, now)));
+
+        verify(jdbcTemplate).update(INVALIDATE_SQL, 1L, Timestamp.valueOf(earliest));
+        verify(jdbcTemplate).update(eq(INVALIDATE_SQL), eq(2L), any(Timestamp.class));
+        verify(jdbcTemplate, never()).update(eq(INVALIDATE_SQL), eq(3L), any(Timestamp.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onTimeRowsLeaveSnapshotsAloneAndAreMarkedDirtyInTheBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        repository.insertAll(List.of(transaction("e1", 1L, now), transaction("e2", 2L, now.minusSeconds(5))));
+
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        // Lock and insert, then the rollups and the dirty marks, all inside the batch's transaction
+        var order = inOrder(jdbcTemplate, rollupRepository);
+        order.verify(jdbcTemplate, times(2)).execute(any(ConnectionCallback.class));
+        order.verify(rollupRepository).add(any());
+        order.verify(jdbcTemplate).execute(any(ConnectionCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rowsOutsideThePartitionsGoToOverflowAndStayOutOfSnapshotsAndRollups() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime archived = now.minusYears(3);
+        TransactionPartitionManager partitions = mock(TransactionPartitionManager.class);
+        when(partitions.accepts(any()))
+                .thenAnswer(invocation -> invocation.<LocalDateTime>getArgument(0).isAfter(archived));
+        when(partitionManager.getIfAvailable()).thenReturn(partitions);
+
+        repository.insertAll(List.of(transaction("e1", 1L, now), transaction("e2", 2L, archived)));
+
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        // Lock, overflow insert, insert and mark
+        verify(jdbcTemplate, times(4)).execute(any(ConnectionCallback.class));
+        ArgumentCaptor<List<Transaction>> rolledUp = ArgumentCaptor.forClass(List.class);
+        verify(rollupRepository).add(rolledUp.capture());
+        assertEquals(List.of("e1"), rolledUp.getValue().stream().map(Transaction::getEventId).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aBatchEntirelyInOverflowOnlyTakesTheLocksAndTheOverflowInsert() {
+        TransactionPartitionManager partitions = mock(TransactionPartitionManager.class);
+        when(partitionManager.getIfAvailable()).thenReturn(partitions);
+
+        repository.insertAll(List.of(transaction("e1", 1L, LocalDateTime.now().minusYears(3))));
+
+        verify(jdbcTemplate, times(2)).execute(any(ConnectionCallback.class));
+        verify(rollupRepository, never()).add(any());
+    }
+
+    private static Transaction transaction(String eventId, Long accountId, LocalDateTime timestamp) {
+        return Transaction.builder().eventId(eventId).accountId(accountId).type("DEPOSIT").amountMinor(100)
+                .timestamp(timestamp).build();
+    }
+}
@@ -0,0 +1,214 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.transactionservice.dto.BalanceResponse;
+import com.hpsudo.transactionservice.model.BalanceSnapshot;
+import com.hpsudo.transactionservice.model.BalanceStep;
+import com.hpsudo.transactionservice.model.BalanceTail;
+import com.hpsudo.transactionservice.repository.BalanceSnapshotRepository;
+import com.hpsudo.transactionservice.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceSnapshotServiceTest {
+
+    private static final long ACCOUNT_ID = 7L;
+    private static final int EVERY = 3;
+    private static final long SETTLE_SECONDS = 300;
+
+    private TransactionRepository transactionRepository;
+    private BalanceSnapshotRepository snapshotRepository;
+    private TransactionPartitionManager partitionManager;
+    private BalanceSnapshotService service;
+    private final List<BalanceStep> history = new ArrayList<>();
+    private final List<BalanceSnapshot> snapshots = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        transactionRepository = mock(TransactionRepository.class);
+        snapshotRepository = mock(BalanceSnapshotRepository.class);
+
+        // Serves findStepsAfter from the in-memory history, as the query would
+        when(transactionRepository.findStepsAfter(eq(ACCOUNT_ID), any(), anyLong(), any(), any()))
+                .thenAnswer(invocation -> {
+                    LocalDateTime fromTimestamp = invocation.getArgument(1);
+                    long fromId = invocation.getArgument(2);
+                    LocalDateTime until = invocation.getArgument(3);
+                    Limit limit = invocation.getArgument(4);
+                    return history.stream()
+                            .filter(step -> step.timestamp().isAfter(fromTimestamp)
+                                    || step.timestamp().equals(fromTimestamp) && step.id() > fromId)
+                            .filter(step -> !step.timestamp().isAfter(until))
+                            .sorted(Comparator.comparing(BalanceStep::timestamp).thenComparing(BalanceStep::id))
+                            .limit(limit.max())
+                            .toList();
+                });
+        when(snapshotRepository.findFirstByAccountIdOrderBySnapshotAtDescLastTransactionIdDesc(ACCOUNT_ID))
+                .thenAnswer(invocation -> snapshots.isEmpty()
+                        ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1)));
+        when(snapshotRepository.save(any(BalanceSnapshot.class))).thenAnswer(invocation -> {
+            snapshots.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        partitionManager = mock(TransactionPartitionManager.class);
+        ObjectProvider<TransactionPartitionManager> partitions = mock(ObjectProvider.class);
+        when(partitions.getIfAvailable()).thenReturn(partitionManager);
+        service = new BalanceSnapshotService(transactionRepository, snapshotRepository, transactionTemplate,
+                partitions, EVERY, SETTLE_SECONDS);
+    }
+
+    @Test
+    void rollForwardWritesOneSnapshotPerFullRunOfSettledTransactions() {
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        for (long id = 1; id <= 7; id++) {
+            history.add(new BalanceStep(id, start.plusMinutes(id), id * 100));
+        }
+
+        assertEquals(2, service.rollForward(ACCOUNT_ID));
+
+        assertEquals(2, snapshots.size());
+        assertSnapshot(snapshots.get(0), 3, 600);
+        assertSnapshot(snapshots.get(1), 6, 600 + 1500);
+        // The lock is taken before the mark is cleared, so a batch committing later marks the account again
+        var order = inOrder(snapshotRepository);
+        order.verify(snapshotRepository).lockAccount(ACCOUNT_ID);
+        order.verify(snapshotRepository).clearDirty(ACCOUNT_ID);
+    }
+
+    @Test
+    void rollForwardContinuesFromTheLatestSnapshot() {
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        for (long id = 1; id <= 6; id++) {
+            history.add(new BalanceStep(id, start.plusMinutes(id), -10));
+        }
+        snapshots.add(BalanceSnapshot.builder().accountId(ACCOUNT_ID).snapshotAt(start.plusMinutes(3))
+                .lastTransactionId(3L).balanceMinor(1_000).build());
+
+        assertEquals(1, service.rollForward(ACCOUNT_ID));
+
+        assertSnapshot(snapshots.get(1), 6, 1_000 - 30);
+    }
+
+    @Test
+    void rollForwardLeavesTransactionsInsideTheSettleWindow() {
+        LocalDateTime now = LocalDateTime.now();
+        history.add(new BalanceStep(1L, now.minusHours(1), 100));
+        history.add(new BalanceStep(2L, now.minusSeconds(SETTLE_SECONDS / 2), 100));
+        history.add(new BalanceStep(3L, now.minusSeconds(1), 100));
+
+        assertEquals(0, service.rollForward(ACCOUNT_ID));
+
+        verify(snapshotRepository, never()).save(any());
+    }
+
+    @Test
+    void snapshotDirtyAccountsKeepsGoingAfterAFailure() {
+        when(snapshotRepository.findDirtyAccountIds()).thenReturn(List.of(1L, ACCOUNT_ID));
+        when(snapshotRepository.lockAccount(1L)).thenThrow(new IllegalStateException("lock timeout"));
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        for (long id = 1; id <= 3; id++) {
+            history.add(new BalanceStep(id, start.plusMinutes(id), 100));
+        }
+
+        service.snapshotDirtyAccounts();
+
+        verify(snapshotRepository, never()).clearDirty(1L);
+        verify(snapshotRepository, times(1)).clearDirty(ACCOUNT_ID);
+        assertEquals(1, snapshots.size());
+    }
+
+    @Test
+    void balanceAtAddsTheTailToTheNearestSnapshot() {
+        LocalDateTime snapshotAt = LocalDateTime.of(2026, 1, 10, 12, 0);
+        LocalDateTime at = snapshotAt.plusDays(1);
+        when(snapshotRepository.findFirstByAccountIdAndSnapshotAtLessThanEqualOrderBySnapshotAtDescLastTransactionIdDesc(
+                ACCOUNT_ID, at)).thenReturn(Optional.of(BalanceSnapshot.builder().accountId(ACCOUNT_ID)
+                .snapshotAt(snapshotAt).lastTransactionId(42L).balanceMinor(10_000).build()));
+        when(transactionRepository.sumAfter(ACCOUNT_ID, snapshotAt, 42L, at)).thenReturn(new BalanceTail(2, -2_550));
+
+        BalanceResponse response = service.balanceAt(ACCOUNT_ID, at);
+
+        assertEquals(new BigDecimal("74.50"), response.balance());
+        assertEquals(snapshotAt, response.snapshotAt());
+        assertEquals(2, response.replayedTransactions());
+    }
+
+    @Test
+    void balanceAtWithoutASnapshotReplaysTheWholeHistory() {
+        LocalDateTime at = LocalDateTime.of(2026, 1, 10, 12, 0);
+        when(snapshotRepository.findFirstByAccountIdAndSnapshotAtLessThanEqualOrderBySnapshotAtDescLastTransactionIdDesc(
+                ACCOUNT_ID, at)).thenReturn(Optional.empty());
+        when(transactionRepository.sumAfter(eq(ACCOUNT_ID), any(), eq(0L), eq(at))).thenReturn(new BalanceTail(5, 1_234));
+
+        BalanceResponse response = service.balanceAt(ACCOUNT_ID, at);
+
+        assertEquals(new BigDecimal("12.34"), response.balance());
+        assertNull(response.snapshotAt());
+        assertEquals(5, response.replayedTransactions());
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(transactionRepository).sumAfter(eq(ACCOUNT_ID), from.capture(), eq(0L), eq(at));
+        assertTrue(from.getValue().isBefore(at.minusYears(1000)));
+    }
+
+    @Test
+    void balanceAtBeforeTheRetainedPartitionsIsRejected() {
+        LocalDate retainedFrom = LocalDate.of(2024, 2, 1);
+        when(partitionManager.retainedFrom()).thenReturn(retainedFrom);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.balanceAt(ACCOUNT_ID, retainedFrom.atStartOfDay().minusNanos(1)));
+
+        assertEquals("Balances before 2024-02-01 are not available; the transactions before it have been archived",
+                e.getMessage());
+        verify(transactionRepository, never()).sumAfter(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void balanceAtTheStartOfTheRetainedPartitionsIsAnswered() {
+        LocalDateTime at = LocalDate.of(2024, 2, 1).atStartOfDay();
+        when(partitionManager.retainedFrom()).thenReturn(at.toLocalDate());
+        // The snapshot written at the end of the archived partition
+        LocalDateTime snapshotAt = at.minusHours(3);
+        when(snapshotRepository.findFirstByAccountIdAndSnapshotAtLessThanEqualOrderBySnapshotAtDescLastTransactionIdDesc(
+                ACCOUNT_ID, at)).thenReturn(Optional.of(BalanceSnapshot.builder().accountId(ACCOUNT_ID)
+                .snapshotAt(snapshotAt).lastTransactionId(42L).balanceMinor(10_000).build()));
+        when(transactionRepository.sumAfter(ACCOUNT_ID, snapshotAt, 42L, at)).thenReturn(new BalanceTail(0, 0));
+
+        assertEquals(new BigDecimal("100.00"), service.balanceAt(ACCOUNT_ID, at).balance());
+    }
+
+    private static void assertSnapshot(BalanceSnapshot snapshot, long lastTransactionId, long balanceMinor) {
+        assertEquals(ACCOUNT_ID, snapshot.getAccountId());
+        assertEquals(lastTransactionId, snapshot.getLastTransactionId());
+        assertEquals(balanceMinor, snapshot.getBalanceMinor());
+    }
+}
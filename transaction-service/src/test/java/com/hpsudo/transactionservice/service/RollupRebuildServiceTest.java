@@ -0,0 +1,102 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.transactionservice.dto.RollupRebuildResponse;
+import com.hpsudo.transactionservice.exception.RollupRebuildInProgressException;
+import com.hpsudo.transactionservice.repository.RollupBatchRepository;
+import com.hpsudo.transactionservice.repository.TransactionBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RollupRebuildServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionBatchRepository batchRepository;
+    private RollupBatchRepository rollupRepository;
+    private ObjectProvider<TransactionPartitionManager> partitionManager;
+    private ResultSet lockResult;
+    private RollupRebuildService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        batchRepository = mock(TransactionBatchRepository.class);
+        rollupRepository = mock(RollupBatchRepository.class);
+        partitionManager = mock(ObjectProvider.class);
+
+        // The advisory lock statements run on this connection; lockResult says whether the lock was free
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        lockResult = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(lockResult);
+        when(lockResult.next()).thenReturn(true);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class))).thenReturn(List.of(1L, 2L, 3L, 4L, 5L));
+        when(rollupRepository.rebuild(anyList(), any())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        service = new RollupRebuildService(jdbcTemplate, batchRepository, rollupRepository, transactionTemplate,
+                partitionManager, 2, 2);
+    }
+
+    @Test
+    void rebuildsEveryAccountInLockedChunks() throws Exception {
+        when(lockResult.getBoolean(1)).thenReturn(true);
+
+        RollupRebuildResponse response = service.rebuild();
+
+        assertEquals(5, response.accounts());
+        assertEquals(3, response.chunks());
+        assertEquals(5, response.dailyRows());
+        for (List<Long> chunk : List.of(List.of(1L, 2L), List.of(3L, 4L), List.of(5L))) {
+            verify(batchRepository).lockAccounts(chunk);
+            verify(rollupRepository).rebuild(chunk, LocalDate.of(1, 1, 1));
+        }
+    }
+
+    @Test
+    void keepsTheRollupsOfArchivedMonths() throws Exception {
+        when(lockResult.getBoolean(1)).thenReturn(true);
+        TransactionPartitionManager partitions = mock(TransactionPartitionManager.class);
+        when(partitions.retainedFrom()).thenReturn(LocalDate.of(2024, 3, 1));
+        when(partitionManager.getIfAvailable()).thenReturn(partitions);
+
+        service.rebuild();
+
+        verify(rollupRepository).rebuild(List.of(1L, 2L), LocalDate.of(2024, 3, 1));
+    }
+
+    @Test
+    void refusesToRunWhileAnotherRebuildHoldsTheLock() throws Exception {
+        when(lockResult.getBoolean(1)).thenReturn(false);
+
+        assertThrows(RollupRebuildInProgressException.class, service::rebuild);
+
+        verify(rollupRepository, never()).rebuild(anyList(), any());
+    }
+}
@@ -0,0 +1,101 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.transactionservice.dto.DailyStatement;
+import com.hpsudo.transactionservice.dto.MonthlyStatement;
+import com.hpsudo.transactionservice.model.DailyRollup;
+import com.hpsudo.transactionservice.repository.DailyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatementServiceTest {
+
+    private static final long ACCOUNT_ID = 7L;
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+
+    private DailyRollupRepository rollupRepository;
+    private StatementService service;
+
+    @BeforeEach
+    void setUp() {
+        rollupRepository = mock(DailyRollupRepository.class);
+        service = new StatementService(rollupRepository);
+    }
+
+    @Test
+    void dailyCoversAtMost366DaysIncludingBothEnds() {
+        when(rollupRepository.findByAccountIdAndDayBetweenOrderByDay(anyLong(), any(), any())).thenReturn(List.of());
+
+        service.daily(ACCOUNT_ID, FROM, FROM.plusDays(365));
+
+        assertThrows(IllegalArgumentException.class, () -> service.daily(ACCOUNT_ID, FROM, FROM.plusDays(366)));
+        assertThrows(IllegalArgumentException.class, () -> service.daily(ACCOUNT_ID, FROM, FROM.minusDays(1)));
+        verify(rollupRepository, never()).findByAccountIdAndDayBetweenOrderByDay(ACCOUNT_ID, FROM, FROM.plusDays(366));
+    }
+
+    @Test
+    void dailyMapsEachRollupToAStatementLine() {
+        DailyRollup day = rollup(FROM, "DEPOSIT", 10_000, "WITHDRAW", 2_550);
+        when(rollupRepository.findByAccountIdAndDayBetweenOrderByDay(ACCOUNT_ID, FROM, FROM)).thenReturn(List.of(day));
+
+        List<DailyStatement> lines = service.daily(ACCOUNT_ID, FROM, FROM);
+
+        assertEquals(List.of(new DailyStatement(FROM, new BigDecimal("100.00"), new BigDecimal("25.50"),
+                new BigDecimal("74.50"), 2, new BigDecimal("25.50"), new BigDecimal("100.00"))), lines);
+    }
+
+    @Test
+    void monthlySumsItsDays() {
+        YearMonth month = YearMonth.of(2025, 1);
+        when(rollupRepository.findByAccountIdAndDayBetweenOrderByDay(ACCOUNT_ID, month.atDay(1), month.atEndOfMonth()))
+                .thenReturn(List.of(
+                        rollup(month.atDay(3), "DEPOSIT", 5_000, "TRANSFER_OUT", 1_000),
+                        rollup(month.atDay(20), "TRANSFER_IN", 700, "WITHDRAW", 20_000)));
+
+        MonthlyStatement statement = service.monthly(ACCOUNT_ID, month);
+
+        assertEquals(new BigDecimal("57.00"), statement.credits());
+        assertEquals(new BigDecimal("210.00"), statement.debits());
+        assertEquals(new BigDecimal("-153.00"), statement.net());
+        assertEquals(4, statement.transactions());
+        assertEquals(new BigDecimal("7.00"), statement.smallestAmount());
+        assertEquals(new BigDecimal("200.00"), statement.largestAmount());
+        assertEquals(2, statement.days().size());
+    }
+
+    @Test
+    void monthWithoutTransactionsHasNoSmallestOrLargestAmount() {
+        YearMonth month = YearMonth.of(2025, 2);
+        when(rollupRepository.findByAccountIdAndDayBetweenOrderByDay(ACCOUNT_ID, month.atDay(1), month.atEndOfMonth()))
+                .thenReturn(List.of());
+
+        MonthlyStatement statement = service.monthly(ACCOUNT_ID, month);
+
+        assertEquals(0, statement.transactions());
+        assertEquals(new BigDecimal("0.00"), statement.net());
+        assertNull(statement.smallestAmount());
+        assertNull(statement.largestAmount());
+    }
+
+    private static DailyRollup rollup(LocalDate day, String firstType, long firstAmount,
+                                      String secondType, long secondAmount) {
+        DailyRollup rollup = new DailyRollup(ACCOUNT_ID, day);
+        rollup.add(firstType, firstAmount);
+        rollup.add(secondType, secondAmount);
+        return rollup;
+    }
+}
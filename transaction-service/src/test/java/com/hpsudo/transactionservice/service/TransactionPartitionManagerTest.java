@@ -0,0 +1,192 @@
+package com.hpsudo.transactionservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionPartitionManagerTest {
+
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MONTHS_AHEAD = 2;
+    private static final int RETENTION_MONTHS = 24;
+
+    @TempDir
+    Path archiveDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private BalanceSnapshotService snapshotService;
+    private TransactionPartitionManager manager;
+    // What pg_inherits would return: name, bound expression, detach pending
+    private final List<Object[]> partitions = new ArrayList<>();
+    private final List<String> statements = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        snapshotService = mock(BalanceSnapshotService.class);
+
+        when(jdbcTemplate.query(startsWith("SELECT c.relname"), any(RowMapper.class))).thenAnswer(invocation -> {
+            RowMapper<Object> mapper = invocation.getArgument(1);
+            List<Object> rows = new ArrayList<>();
+            for (Object[] partition : partitions) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn((String) partition[0]);
+                when(rs.getString(2)).thenReturn((String) partition[1]);
+                when(rs.getBoolean(3)).thenReturn((Boolean) partition[2]);
+                rows.add(mapper.mapRow(rs, rows.size()));
+            }
+            return rows;
+        });
+        // Applies partition DDL to the list above, as PostgreSQL would to pg_inherits
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            statements.add(sql);
+            if (sql.startsWith("CREATE TABLE IF NOT EXISTS transaction_y")) {
+                String name = sql.split(" ")[5];
+                partitions.add(new Object[]{name, sql.substring(sql.indexOf("FOR VALUES")), false});
+            } else if (sql.startsWith("ALTER TABLE transaction ATTACH PARTITION transaction_legacy")) {
+                partitions.add(new Object[]{"transaction_legacy", sql.substring(sql.indexOf("FOR VALUES")), false});
+            } else if (sql.startsWith("ALTER TABLE transaction DETACH PARTITION")) {
+                partitions.removeIf(partition -> sql.split(" ")[5].equals(partition[0]));
+            }
+            return null;
+        }).when(jdbcTemplate).execute(anyString());
+
+        manager = new TransactionPartitionManager(jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), snapshotService,
+                MONTHS_AHEAD, RETENTION_MONTHS, archiveDir, false);
+    }
+
+    @Test
+    void convertsAPlainTableAndKeepsItsRowsAsTheLegacyPartition() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT relkind"), eq(String.class))).thenReturn("r");
+        when(jdbcTemplate.queryForList(startsWith("SELECT c.relname FROM pg_index"), eq(String.class)))
+                .thenReturn(List.of("transaction_pkey"));
+
+        manager.afterSingletonsInstantiated();
+
+        LocalDateTime nextMonth = YearMonth.now().plusMonths(1).atDay(1).atStartOfDay();
+        assertEquals("ALTER TABLE transaction RENAME TO transaction_legacy", statements.get(0));
+        assertTrue(statements.contains("ALTER INDEX \"transaction_pkey\" RENAME TO \"transaction_pkey_legacy\""));
+        assertTrue(statements.contains("ALTER TABLE transaction ATTACH PARTITION transaction_legacy"
+                + " FOR VALUES FROM (MINVALUE) TO ('" + BOUND.format(nextMonth) + "')"));
+        assertTrue(statements.contains(
+                "CREATE TABLE IF NOT EXISTS transaction_overflow (LIKE transaction INCLUDING ALL)"));
+        // The legacy partition ends at the next month, so partitions follow from there
+        assertEquals(List.of("transaction_legacy", name(nextMonth), name(nextMonth.plusMonths(1))),
+                partitionNames());
+    }
+
+    @Test
+    void createsOnlyTheMissingMonthsOfAPartitionedTable() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT relkind"), eq(String.class))).thenReturn("p");
+        LocalDateTime thisMonth = YearMonth.now().atDay(1).atStartOfDay();
+        partitions.add(partition(thisMonth));
+
+        manager.afterSingletonsInstantiated();
+
+        assertFalse(statements.stream().anyMatch(sql -> sql.contains("RENAME")));
+        assertEquals(List.of(name(thisMonth), name(thisMonth.plusMonths(1)), name(thisMonth.plusMonths(2))),
+                partitionNames());
+    }
+
+    @Test
+    void acceptsOnlyTimestampsAnAttachedPartitionCovers() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT relkind"), eq(String.class))).thenReturn("p");
+        LocalDateTime thisMonth = YearMonth.now().atDay(1).atStartOfDay();
+        partitions.add(partition(thisMonth));
+
+        manager.afterSingletonsInstantiated();
+
+        assertTrue(manager.accepts(thisMonth));
+        assertTrue(manager.accepts(LocalDateTime.now()));
+        assertFalse(manager.accepts(thisMonth.minusSeconds(1)));
+        assertFalse(manager.accepts(thisMonth.plusMonths(MONTHS_AHEAD + 1)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void archivesColdPartitionsAndDetachesThemConcurrently() throws Exception {
+        LocalDateTime cold = YearMonth.now().minusMonths(RETENTION_MONTHS + 1).atDay(1).atStartOfDay();
+        LocalDateTime interrupted = cold.minusMonths(1);
+        LocalDateTime thisMonth = YearMonth.now().atDay(1).atStartOfDay();
+        partitions.add(partition(cold));
+        partitions.add(new Object[]{name(interrupted), bounds(interrupted), true});
+        for (int month = 0; month <= MONTHS_AHEAD; month++) {
+            partitions.add(partition(thisMonth.plusMonths(month)));
+        }
+        when(jdbcTemplate.queryForList(startsWith("SELECT DISTINCT account_id FROM"), eq(Long.class)))
+                .thenReturn(List.of(1L, 2L));
+
+        Connection connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        CopyManager copyManager = mock(CopyManager.class);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyOut(anyString(), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write("id,account_id\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+
+        manager.runMaintenance();
+
+        verify(snapshotService).snapshotBefore(1L, cold.plusMonths(1));
+        verify(snapshotService).snapshotBefore(2L, cold.plusMonths(1));
+        assertTrue(Files.exists(archiveDir.resolve(name(cold) + ".csv.gz")));
+        assertTrue(Files.exists(archiveDir.resolve(name(interrupted) + ".csv.gz")));
+        assertTrue(statements.contains("ALTER TABLE transaction DETACH PARTITION " + name(cold) + " CONCURRENTLY"));
+        assertTrue(statements.contains("ALTER TABLE transaction DETACH PARTITION " + name(interrupted) + " FINALIZE"));
+        assertFalse(statements.stream().anyMatch(sql -> sql.startsWith("DROP TABLE")));
+        assertFalse(manager.accepts(cold));
+    }
+
+    private List<String> partitionNames() {
+        return partitions.stream().map(partition -> (String) partition[0]).toList();
+    }
+
+    private static Object[] partition(LocalDateTime from) {
+        return new Object[]{name(from), bounds(from), false};
+    }
+
+    private static String bounds(LocalDateTime from) {
+        return "FOR VALUES FROM ('" + BOUND.format(from) + "') TO ('" + BOUND.format(from.plusMonths(1)) + "')";
+    }
+
+    private static String name(LocalDateTime from) {
+        return DateTimeFormatter.ofPattern("'transaction_y'yyyy'm'MM").format(from);
+    }
+}
@@ -0,0 +1,297 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.repository.RollupBatchRepository;
+import com.hpsudo.transactionservice.repository.TransactionBatchRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the partitioning DDL and the consumer's batch insert against a real PostgreSQL, which the mocked unit tests
+ * cannot check: converting the plain table, archiving with {@code DETACH ... CONCURRENTLY} and {@code FINALIZE}, and
+ * {@code ON CONFLICT (event_id, timestamp)} against the partitioned and the overflow table. Each test starts from an
+ * empty {@code partitioning_it} schema:
+ *
+ * <pre>./mvnw test -Dtest=TransactionPartitioningIntegrationTest -Dpg.enabled=true</pre>
+ *
+ * The database is set with {@code -Dpg.url}, {@code -Dpg.user} and {@code -Dpg.password}; the defaults match the
+ * postgres container of docker-compose.yml with its port published on localhost.
+ */
+@EnabledIfSystemProperty(named = "pg.enabled", matches = "true")
+class TransactionPartitioningIntegrationTest {
+
+    private static final String SCHEMA = "partitioning_it";
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    private static final LocalDateTime OLD = LocalDateTime.of(2020, 1, 15, 10, 0);
+    private static final LocalDateTime RECENT_START = YearMonth.now().atDay(1).atStartOfDay();
+
+    // The table as Hibernate created it before partitioning
+    private static final String PLAIN_TABLE = """
+            CREATE SEQUENCE transaction_id_seq;
+            CREATE TABLE transaction (
+                id bigint DEFAULT nextval('transaction_id_seq') PRIMARY KEY,
+                event_id varchar(36),
+                account_id bigint,
+                type varchar(255),
+                amount_minor bigint NOT NULL,
+                description varchar(255),
+                transfer_id varchar(255),
+                counterparty_account_id bigint,
+                "timestamp" timestamp(6),
+                CONSTRAINT uk_transaction_event_id_timestamp UNIQUE (event_id, "timestamp")
+            );
+            CREATE INDEX idx_transaction_account_timestamp_id ON transaction (account_id, "timestamp" DESC, id DESC);
+            CREATE TABLE balance_snapshot_dirty (account_id bigint PRIMARY KEY);
+            CREATE TABLE balance_snapshot (account_id bigint, snapshot_at timestamp(6));
+            """;
+
+    // A table partitioned long ago: January 2020 is past any retention, the rest of the history is recent
+    private static final String PARTITIONED_TABLE = """
+            CREATE SEQUENCE transaction_id_seq;
+            CREATE TABLE transaction (
+                id bigint DEFAULT nextval('transaction_id_seq') NOT NULL,
+                event_id varchar(36),
+                account_id bigint,
+                type varchar(255),
+                amount_minor bigint NOT NULL,
+                description varchar(255),
+                transfer_id varchar(255),
+                counterparty_account_id bigint,
+                "timestamp" timestamp(6) NOT NULL,
+                CONSTRAINT transaction_pkey PRIMARY KEY (id, "timestamp"),
+                CONSTRAINT uk_transaction_event_id_timestamp UNIQUE (event_id, "timestamp")
+            ) PARTITION BY RANGE ("timestamp");
+            CREATE TABLE transaction_y2020m01 PARTITION OF transaction
+                FOR VALUES FROM ('2020-01-01 00:00:00') TO ('2020-02-01 00:00:00');
+            CREATE TABLE transaction_recent PARTITION OF transaction
+                FOR VALUES FROM ('2020-02-01 00:00:00') TO ('%s');
+            """.formatted(BOUND.format(RECENT_START));
+
+    @TempDir
+    Path archiveDir;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate transactionTemplate;
+    private BalanceSnapshotService snapshotService;
+    private TransactionPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("pg.url", "jdbc:postgresql://localhost:5432/transactiondb"));
+        dataSource.setUsername(System.getProperty("pg.user", "postgres"));
+        dataSource.setPassword(System.getProperty("pg.password", "postgres"));
+        dataSource.setSchema(SCHEMA);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbc.execute("CREATE SCHEMA " + SCHEMA);
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        snapshotService = mock(BalanceSnapshotService.class);
+        manager = new TransactionPartitionManager(jdbc, transactionTemplate, snapshotService, 1, 24, archiveDir, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    @Test
+    void plainTableIsConvertedWithItsRowsAsTheLegacyPartition() {
+        jdbc.execute(PLAIN_TABLE);
+        insert("e1", 1L, OLD);
+        insert("e2", 2L, NOW);
+
+        manager.afterSingletonsInstantiated();
+
+        assertEquals("p", jdbc.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = 'transaction'::regclass", String.class));
+        assertEquals("PRIMARY KEY (id, \"timestamp\")", jdbc.queryForObject(
+                "SELECT pg_get_constraintdef(oid) FROM pg_constraint"
+                        + " WHERE conrelid = 'transaction'::regclass AND contype = 'p'", String.class));
+        assertEquals("UNIQUE (event_id, \"timestamp\")", jdbc.queryForObject(
+                "SELECT pg_get_constraintdef(oid) FROM pg_constraint"
+                        + " WHERE conrelid = 'transaction'::regclass AND contype = 'u'", String.class));
+        assertEquals("FOR VALUES FROM (MINVALUE) TO ('" + BOUND.format(RECENT_START.plusMonths(1)) + "')",
+                jdbc.queryForObject("SELECT pg_get_expr(relpartbound, oid) FROM pg_class"
+                        + " WHERE oid = 'transaction_legacy'::regclass", String.class));
+        // The legacy partition covers the current month, so one month ahead is the next one
+        assertEquals(List.of("transaction_legacy", partitionName(RECENT_START.plusMonths(1))), partitionNames());
+
+        // Existing rows keep their ids, new ones continue the sequence
+        assertEquals(List.of("e1", "e2"), jdbc.queryForList(
+                "SELECT event_id FROM transaction ORDER BY id", String.class));
+        assertEquals(List.of(1L, 2L), jdbc.queryForList("SELECT id FROM transaction ORDER BY id", Long.class));
+        assertEquals(3L, jdbc.queryForObject("SELECT nextval('transaction_id_seq')", Long.class));
+
+        assertEquals(columns("transaction"), columns("transaction_overflow"));
+        assertTrue(jdbc.queryForList("SELECT indexdef FROM pg_indexes"
+                        + " WHERE schemaname = current_schema() AND tablename = 'transaction_overflow'", String.class)
+                .stream().anyMatch(index -> index.startsWith("CREATE UNIQUE INDEX")
+                        && index.endsWith("(event_id, \"timestamp\")")));
+        assertNull(manager.retainedFrom());
+
+        // A second start finds the table partitioned and leaves it alone
+        manager.afterSingletonsInstantiated();
+        assertEquals(2, partitionNames().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redeliveredBatchIsDroppedByTheConflictClauseInBothTables() {
+        jdbc.execute(PLAIN_TABLE);
+        manager.afterSingletonsInstantiated();
+        RollupBatchRepository rollupRepository = mock(RollupBatchRepository.class);
+        ObjectProvider<TransactionPartitionManager> partitions = mock(ObjectProvider.class);
+        when(partitions.getIfAvailable()).thenReturn(manager);
+        TransactionBatchRepository repository = new TransactionBatchRepository(jdbc, rollupRepository, partitions, 300);
+        List<Transaction> batch = List.of(
+                transaction("e1", 1L, NOW),
+                transaction("e2", 2L, NOW.minusSeconds(1)),
+                transaction("e1", 1L, NOW),
+                // Beyond the partitions created ahead
+                transaction("e3", 3L, NOW.plusYears(5)));
+
+        transactionTemplate.executeWithoutResult(status -> repository.insertAll(batch));
+        transactionTemplate.executeWithoutResult(status -> repository.insertAll(batch));
+
+        assertEquals(List.of("e1", "e2"), jdbc.queryForList(
+                "SELECT event_id FROM transaction ORDER BY event_id", String.class));
+        assertEquals(List.of("e3"), jdbc.queryForList("SELECT event_id FROM transaction_overflow", String.class));
+        ArgumentCaptor<List<Transaction>> added = ArgumentCaptor.forClass(List.class);
+        verify(rollupRepository, times(2)).add(added.capture());
+        assertEquals(List.of("e1", "e2"), added.getAllValues().get(0).stream().map(Transaction::getEventId).toList());
+        assertEquals(List.of(), added.getAllValues().get(1));
+        assertEquals(List.of(1L, 2L), jdbc.queryForList(
+                "SELECT account_id FROM balance_snapshot_dirty ORDER BY account_id", Long.class));
+    }
+
+    @Test
+    void coldPartitionIsSnapshottedArchivedAndDetachedConcurrently() throws Exception {
+        jdbc.execute(PARTITIONED_TABLE);
+        insert("e1", 1L, OLD);
+        insert("e2", 2L, OLD.plusDays(1));
+        insert("e3", 1L, LocalDateTime.of(2020, 3, 1, 9, 0));
+        manager.afterSingletonsInstantiated();
+        assertTrue(manager.accepts(OLD));
+
+        manager.runMaintenance();
+
+        assertArchived();
+        assertEquals(LocalDate.of(2020, 2, 1), manager.retainedFrom());
+        assertFalse(manager.accepts(OLD));
+        assertEquals(List.of("e3"), jdbc.queryForList("SELECT event_id FROM transaction", String.class));
+    }
+
+    @Test
+    void interruptedConcurrentDetachIsFinalizedByTheNextRun() throws Exception {
+        jdbc.execute(PARTITIONED_TABLE);
+        insert("e1", 1L, OLD);
+        insert("e2", 2L, OLD.plusDays(1));
+        manager.afterSingletonsInstantiated();
+
+        // A reader still using the table makes the detach wait in its second phase, where the timeout cancels it
+        try (Connection reader = dataSource.getConnection(); Connection detacher = dataSource.getConnection()) {
+            reader.setAutoCommit(false);
+            try (Statement statement = reader.createStatement()) {
+                statement.execute("SELECT count(*) FROM transaction");
+            }
+            try (Statement statement = detacher.createStatement()) {
+                statement.execute("SET statement_timeout = '1s'");
+                assertThrows(SQLException.class, () -> statement.execute(
+                        "ALTER TABLE transaction DETACH PARTITION transaction_y2020m01 CONCURRENTLY"));
+            }
+            reader.rollback();
+        }
+        assertEquals(Boolean.TRUE, jdbc.queryForObject("SELECT inhdetachpending FROM pg_inherits"
+                + " WHERE inhrelid = 'transaction_y2020m01'::regclass", Boolean.class));
+        // Pending partitions no longer count as attached
+        assertEquals(LocalDate.of(2020, 2, 1), manager.retainedFrom());
+
+        manager.runMaintenance();
+
+        assertArchived();
+    }
+
+    private void assertArchived() throws Exception {
+        verify(snapshotService).snapshotBefore(1L, LocalDateTime.of(2020, 2, 1, 0, 0));
+        verify(snapshotService).snapshotBefore(2L, LocalDateTime.of(2020, 2, 1, 0, 0));
+        assertFalse(partitionNames().contains("transaction_y2020m01"));
+        // Detached, not dropped
+        assertEquals(2, jdbc.queryForObject("SELECT count(*) FROM transaction_y2020m01", Integer.class));
+
+        Path file = archiveDir.resolve("transaction_y2020m01.csv.gz");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            List<String> lines = reader.lines().toList();
+            assertTrue(lines.get(0).startsWith("id,event_id,account_id"), lines.get(0));
+            assertEquals(3, lines.size());
+        }
+        assertFalse(Files.exists(archiveDir.resolve("transaction_y2020m01.csv.gz.part")));
+    }
+
+    private void insert(String eventId, long accountId, LocalDateTime timestamp) {
+        jdbc.update("INSERT INTO transaction (event_id, account_id, type, amount_minor, \"timestamp\")"
+                + " VALUES (?, ?, 'DEPOSIT', 100, ?)", eventId, accountId, Timestamp.valueOf(timestamp));
+    }
+
+    private List<String> partitionNames() {
+        return jdbc.queryForList("SELECT c.relname::text FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                + " WHERE i.inhparent = 'transaction'::regclass AND NOT i.inhdetachpending ORDER BY c.relname",
+                String.class);
+    }
+
+    private List<String> columns(String table) {
+        return jdbc.queryForList("SELECT column_name || ' ' || data_type FROM information_schema.columns"
+                + " WHERE table_schema = current_schema() AND table_name = ? ORDER BY ordinal_position",
+                String.class, table);
+    }
+
+    private static String partitionName(LocalDateTime from) {
+        return "transaction_y%04dm%02d".formatted(from.getYear(), from.getMonthValue());
+    }
+
+    private static Transaction transaction(String eventId, long accountId, LocalDateTime timestamp) {
+        return Transaction.builder().eventId(eventId).accountId(accountId).type("DEPOSIT").amountMinor(100)
+                .timestamp(timestamp).build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.hpsudo.transactionservice.service;
+
+import com.hpsudo.transactionservice.dto.TransactionPage;
+import com.hpsudo.transactionservice.dto.TransactionResponse;
+import com.hpsudo.transactionservice.model.Transaction;
+import com.hpsudo.transactionservice.repository.RollupBatchRepository;
+import com.hpsudo.transactionservice.repository.TransactionBatchRepository;
+import com.hpsudo.transactionservice.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionServiceTest {
+
+    private static final long ACCOUNT_ID = 7L;
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    private final List<Transaction> history = new ArrayList<>();
+    // Commits and streamed rows, in the order they happened
+    private final List<Object> events = new ArrayList<>();
+    private TransactionService service;
+
+    @BeforeEach
+    void setUp() {
+        // The repository answers both keyset queries from history, with the same predicate and order as their JPQL
+        TransactionRepository repository = mock(TransactionRepository.class);
+        when(repository.findByAccountIdOrderByTimestampDescIdDesc(anyLong(), any()))
+                .thenAnswer(invocation -> page(tx -> true, invocation.getArgument(1)));
+        when(repository.findPageAfter(anyLong(), any(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime timestamp = invocation.getArgument(1);
+            Long id = invocation.getArgument(2);
+            return page(tx -> tx.getTimestamp().isBefore(timestamp)
+                    || (tx.getTimestamp().equals(timestamp) && tx.getId() < id), invocation.getArgument(3));
+        });
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        doAnswer(invocation -> events.add("commit")).when(transactionManager).commit(any());
+        service = new TransactionService(repository, mock(TransactionBatchRepository.class),
+                mock(RollupBatchRepository.class), mock(EntityManager.class), transactionManager, 500, 2);
+
+        // Ids are assigned out of timestamp order, as they are for late-arriving events
+        add(1, T0.plusSeconds(2));
+        add(5, T0.plusSeconds(1));
+        add(4, T0.plusSeconds(1));
+        add(3, T0.plusSeconds(1));
+        add(2, T0);
+    }
+
+    @Test
+    void streamReadsEachPageInItsOwnTransactionAndHandsRowsOverAfterItCommits() {
+        service.streamByAccount(ACCOUNT_ID, tx -> events.add(tx.id()));
+
+        assertEquals(List.of("commit", 1L, 5L, "commit", 4L, 3L, "commit", 2L), events);
+    }
+
+    @Test
+    void streamEndsWithAnEmptyPageWhenTheLastOneWasFull() {
+        history.removeIf(tx -> tx.getId() == 2L);
+
+        service.streamByAccount(ACCOUNT_ID, tx -> events.add(tx.id()));
+
+        assertEquals(List.of("commit", 1L, 5L, "commit", 4L, 3L, "commit"), events);
+    }
+
+    @Test
+    void pagesSplitRowsWithEqualTimestampsWithoutSkippingOrRepeatingAny() {
+        TransactionPage first = service.getPageByAccount(ACCOUNT_ID, null, 3);
+        TransactionPage second = service.getPageByAccount(ACCOUNT_ID, first.nextCursor(), 3);
+
+        assertEquals(List.of(1L, 5L, 4L), ids(first));
+        assertEquals(List.of(3L, 2L), ids(second));
+        assertNull(second.nextCursor());
+    }
+
+    private List<Transaction> page(Predicate<Transaction> after, Limit limit) {
+        return history.stream()
+                .filter(after)
+                .sorted(Comparator.comparing(Transaction::getTimestamp).thenComparing(Transaction::getId).reversed())
+                .limit(limit.max())
+                .toList();
+    }
+
+    private void add(long id, LocalDateTime timestamp) {
+        history.add(Transaction.builder().id(id).accountId(ACCOUNT_ID).type("DEPOSIT").amountMinor(100)
+                .timestamp(timestamp).build());
+    }
+
+    private static List<Long> ids(TransactionPage page) {
+        return page.items().stream().map(TransactionResponse::id).toList();
+    }
+}